@@ -12,9 +12,24 @@
 #include "SPL/Runtime/Function/SPLCast.h"
 #include "SPL/Runtime/Function/TimeFunctions.h"
 #include <SPL/Runtime/Type/Tuple.h>
+#include <SPL/Runtime/Common/RuntimeException.h>
+
+#include <pthread.h>
+
+#include <cerrno>
+#include <cmath>
+#include <cstdlib>
+#include <cstring>
+#include <limits>
+#include <map>
+#include <sstream>
+#include <strings.h>
+#include <vector>
 
 #include "rapidjson/writer.h"
 #include "rapidjson/stringbuffer.h"
+#include "rapidjson/reader.h"
+#include "rapidjson/error/en.h"
 
 using namespace rapidjson;
 using namespace SPL;
@@ -134,7 +149,7 @@ namespace com { namespace ibm { namespace streamsx { namespace json {
 			const std::string & attrName = (*tupleIter).getName();
 			const ConstValueHandle & attrValueHandle = static_cast<ConstTupleAttribute>(*tupleIter).getValue();
 
-			writer.String(convToChars(attrName));
+			writer.String(attrName.data(), static_cast<SizeType>(attrName.size()));
 			writeAny(writer, attrValueHandle);
 		}
 
@@ -232,8 +247,12 @@ namespace com { namespace ibm { namespace streamsx { namespace json {
 				writer.String(convToChars(Functions::Time::ctime(value)));
 				break;
 			}
+			case Meta::Type::RSTRING : {
+				const rstring & value = valueHandle;
+				writer.String(value.data(), static_cast<SizeType>(value.size()));
+				break;
+			}
 			case Meta::Type::BSTRING :
-			case Meta::Type::RSTRING :
 			case Meta::Type::USTRING : {
 				writer.String(convToChars(valueHandle));
 				break;
@@ -252,33 +271,872 @@ namespace com { namespace ibm { namespace streamsx { namespace json {
 	}
 
 
-	inline SPL::rstring tupleToJSON(Tuple const& tuple) {
+	/*
+	 * Conversion of JSON to SPL tuples.
+	 *
+	 * The tuple is populated in place by a rapidjson SAX handler as the JSON is
+	 * parsed, no rapidjson Document is built. The conversions match the JSONToTuple
+	 * operator: members are matched to attributes by name, members without a
+	 * matching attribute or whose value cannot be converted to the attribute's type
+	 * are skipped, null values and null elements of arrays are ignored and
+	 * attributes not present in the JSON are left unchanged.
+	 */
+
+	/* A JSON scalar value passed from a SAX event to its conversion to an SPL type. */
+	struct JsonScalar {
+		enum Kind { BOOL, INT64, UINT64, DOUBLE, STRING };
+		Kind kind;
+		bool b;
+		int64_t i;
+		uint64_t u;
+		double d;
+		// null terminated, as passed by the rapidjson Reader
+		const char * s;
+		SizeType length;
+	};
+
+	/*
+	 * Check the conversion of a string by strtoll, strtoull or strtod consumed
+	 * the whole string and was within range, a string such as "12abc" cannot be converted.
+	 */
+	inline bool scalarStringConverted(JsonScalar const & v, const char * end) {
+		return end == v.s + v.length && errno != ERANGE;
+	}
+
+	/*
+	 * Check a double is within [min, limit) before it is cast to an integer,
+	 * the cast of a value outside the range of the integer type is undefined.
+	 */
+	inline bool doubleInRange(double d, double min, double limit) {
+		return d >= min && d < limit;
+	}
+
+	/* Integers from JSON numbers and strings, false if the value is not within the range of int64. */
+	inline bool scalarToInt64(JsonScalar const & v, int64_t & out) {
+		switch (v.kind) {
+			case JsonScalar::INT64 : out = v.i; return true;
+			case JsonScalar::UINT64 :
+				// the reader only reports values above the range of int64 as uint64
+				if (v.u > static_cast<uint64_t>(std::numeric_limits<int64_t>::max()))
+					return false;
+				out = static_cast<int64_t>(v.u);
+				return true;
+			case JsonScalar::DOUBLE :
+				if (!doubleInRange(v.d, -9223372036854775808.0, 9223372036854775808.0))
+					return false;
+				out = static_cast<int64_t>(v.d);
+				return true;
+			case JsonScalar::STRING : {
+				if (v.length == 0) {
+					out = 0;
+					return true;
+				}
+				char * end;
+				errno = 0;
+				out = strtoll(v.s, &end, 10);
+				return scalarStringConverted(v, end);
+			}
+			default: return false;
+		}
+	}
+
+	/*
+	 * Unsigned integers from JSON numbers and strings, false if the value is not within
+	 * the range of uint64. As for the JSONToTuple operator a negative value within the
+	 * range of int64 is held with the same bits.
+	 */
+	inline bool scalarToUint64(JsonScalar const & v, uint64_t & out) {
+		switch (v.kind) {
+			case JsonScalar::INT64 : out = static_cast<uint64_t>(v.i); return true;
+			case JsonScalar::UINT64 : out = v.u; return true;
+			case JsonScalar::DOUBLE :
+				if (doubleInRange(v.d, 0, 18446744073709551616.0))
+					out = static_cast<uint64_t>(v.d);
+				else if (doubleInRange(v.d, -9223372036854775808.0, 0))
+					out = static_cast<uint64_t>(static_cast<int64_t>(v.d));
+				else
+					return false;
+				return true;
+			case JsonScalar::STRING : {
+				if (v.length == 0) {
+					out = 0;
+					return true;
+				}
+				char * end;
+				errno = 0;
+				out = strtoull(v.s, &end, 10);
+				return scalarStringConverted(v, end);
+			}
+			default: return false;
+		}
+	}
+
+	inline bool scalarToDouble(JsonScalar const & v, double & out) {
+		switch (v.kind) {
+			case JsonScalar::INT64 : out = static_cast<double>(v.i); return true;
+			case JsonScalar::UINT64 : out = static_cast<double>(v.u); return true;
+			case JsonScalar::DOUBLE : out = v.d; return true;
+			case JsonScalar::STRING : {
+				if (v.length == 0) {
+					out = 0;
+					return true;
+				}
+				char * end;
+				errno = 0;
+				out = strtod(v.s, &end);
+				return scalarStringConverted(v, end);
+			}
+			default: return false;
+		}
+	}
+
+	inline void scalarToRString(JsonScalar const & v, rstring & out) {
+		switch (v.kind) {
+			case JsonScalar::BOOL : out = v.b ? "true" : "false"; break;
+			case JsonScalar::INT64 : out = spl_cast<rstring,int64>::cast(v.i); break;
+			case JsonScalar::UINT64 : out = spl_cast<rstring,uint64>::cast(v.u); break;
+			case JsonScalar::DOUBLE : out = spl_cast<rstring,float64>::cast(v.d); break;
+			default: out.assign(v.s, v.length);
+		}
+	}
+
+	/* Assign an integer, false if the value is outside the range of T. */
+	template<typename T>
+	inline bool assignInteger(ValueHandle const & valueHandle, JsonScalar const & v) {
+		int64_t i;
+		if (!scalarToInt64(v, i))
+			return false;
+		if (i < static_cast<int64_t>(std::numeric_limits<T>::min()) || i > static_cast<int64_t>(std::numeric_limits<T>::max()))
+			return false;
+		T & value = valueHandle;
+		value = static_cast<T>(i);
+		return true;
+	}
+
+	/* Assign a float, a finite value beyond the range of T is infinite as for the JSONToTuple operator. */
+	template<typename T>
+	inline bool assignFloat(ValueHandle const & valueHandle, JsonScalar const & v) {
+		double d;
+		if (!scalarToDouble(v, d))
+			return false;
+		T & value = valueHandle;
+		if (d > std::numeric_limits<T>::max())
+			value = std::numeric_limits<T>::infinity();
+		else if (d < -std::numeric_limits<T>::max())
+			value = -std::numeric_limits<T>::infinity();
+		else
+			value = static_cast<T>(d);
+		return true;
+	}
+
+	template<typename T>
+	inline bool assignDecimal(ValueHandle const & valueHandle, JsonScalar const & v) {
+		T & value = valueHandle;
+		if (v.kind == JsonScalar::INT64) {
+			value = spl_cast<T,int64>::cast(v.i);
+			return true;
+		}
+		double d;
+		if (!scalarToDouble(v, d))
+			return false;
+		value = spl_cast<T,float64>::cast(d);
+		return true;
+	}
+
+	/*
+	 * Assign a JSON scalar to an SPL value.
+	 * Returns false if the value is not modified as its type is not supported
+	 * or the JSON value cannot be converted to it.
+	 */
+	inline bool assignScalar(ValueHandle const & valueHandle, JsonScalar const & v) {
+
+		switch (valueHandle.getMetaType()) {
+			case Meta::Type::BOOLEAN : {
+				boolean & value = valueHandle;
+				if (v.kind == JsonScalar::BOOL)
+					value = v.b;
+				else if (v.kind == JsonScalar::STRING)
+					value = v.length == 4 && strncasecmp(v.s, "true", 4) == 0;
+				else
+					return false;
+				return true;
+			}
+			case Meta::Type::INT8 :
+				return assignInteger<int8>(valueHandle, v);
+			case Meta::Type::INT16 :
+				return assignInteger<int16>(valueHandle, v);
+			case Meta::Type::INT32 :
+				return assignInteger<int32>(valueHandle, v);
+			case Meta::Type::INT64 :
+				return assignInteger<int64>(valueHandle, v);
+			case Meta::Type::UINT8 :
+				return assignInteger<uint8>(valueHandle, v);
+			case Meta::Type::UINT16 :
+				return assignInteger<uint16>(valueHandle, v);
+			case Meta::Type::UINT32 :
+				return assignInteger<uint32>(valueHandle, v);
+			case Meta::Type::UINT64 : {
+				uint64_t u;
+				if (!scalarToUint64(v, u))
+					return false;
+				uint64 & value = valueHandle;
+				value = u;
+				return true;
+			}
+			case Meta::Type::FLOAT32 :
+				return assignFloat<float32>(valueHandle, v);
+			case Meta::Type::FLOAT64 :
+				return assignFloat<float64>(valueHandle, v);
+			case Meta::Type::DECIMAL32 :
+				return assignDecimal<decimal32>(valueHandle, v);
+			case Meta::Type::DECIMAL64 :
+				return assignDecimal<decimal64>(valueHandle, v);
+			case Meta::Type::DECIMAL128 :
+				return assignDecimal<decimal128>(valueHandle, v);
+			case Meta::Type::TIMESTAMP : {
+				// seconds since the epoch, as written by the JSONToTuple operator
+				double d;
+				if (!scalarToDouble(v, d) || !doubleInRange(d, -9223372036854775808.0, 9223372036854775808.0))
+					return false;
+				const double secs = floor(d);
+				timestamp & value = valueHandle;
+				value = timestamp(static_cast<int64>(secs), static_cast<uint32>((d - secs) * 1e9));
+				return true;
+			}
+			case Meta::Type::RSTRING : {
+				rstring & value = valueHandle;
+				scalarToRString(v, value);
+				return true;
+			}
+			case Meta::Type::USTRING : {
+				rstring str;
+				scalarToRString(v, str);
+				ustring & value = valueHandle;
+				value = spl_cast<ustring,rstring>::cast(str);
+				return true;
+			}
+			default:
+				// blob, bstring, complex, enum and xml are not supported
+				return false;
+		}
+	}
+
+	inline bool isObjectType(Meta::Type type) {
+		return type == Meta::Type::TUPLE || type == Meta::Type::MAP || type == Meta::Type::BMAP;
+	}
+
+	inline bool isArrayType(Meta::Type type) {
+		return type == Meta::Type::LIST || type == Meta::Type::BLIST || type == Meta::Type::SET || type == Meta::Type::BSET;
+	}
+
+	/* Create a new element for a list or set, to be added with addElement and then deleted. */
+	inline ValueHandle createElement(ValueHandle const & valueHandle) {
+		switch (valueHandle.getMetaType()) {
+			case Meta::Type::BLIST : {
+				BList & list = valueHandle;
+				return list.createElement();
+			}
+			case Meta::Type::SET : {
+				Set & set = valueHandle;
+				return set.createElement();
+			}
+			case Meta::Type::BSET : {
+				BSet & set = valueHandle;
+				return set.createElement();
+			}
+			default: {
+				List & list = valueHandle;
+				return list.createElement();
+			}
+		}
+	}
+
+	inline void addElement(ValueHandle const & valueHandle, ConstValueHandle const & element) {
+		switch (valueHandle.getMetaType()) {
+			case Meta::Type::BLIST : {
+				BList & list = valueHandle;
+				list.pushBack(element);
+				break;
+			}
+			case Meta::Type::SET : {
+				Set & set = valueHandle;
+				set.insertElement(element);
+				break;
+			}
+			case Meta::Type::BSET : {
+				BSet & set = valueHandle;
+				set.insertElement(element);
+				break;
+			}
+			default: {
+				List & list = valueHandle;
+				list.pushBack(element);
+			}
+		}
+	}
+
+	/* Create a new key or value for a map, to be added with insertMapElement and then deleted. */
+	inline ValueHandle createMapKey(ValueHandle const & valueHandle) {
+		if (valueHandle.getMetaType() == Meta::Type::BMAP) {
+			BMap & map = valueHandle;
+			return map.createKey();
+		}
+		Map & map = valueHandle;
+		return map.createKey();
+	}
+
+	inline ValueHandle createMapValue(ValueHandle const & valueHandle) {
+		if (valueHandle.getMetaType() == Meta::Type::BMAP) {
+			BMap & map = valueHandle;
+			return map.createValue();
+		}
+		Map & map = valueHandle;
+		return map.createValue();
+	}
+
+	inline void insertMapElement(ValueHandle const & valueHandle, ConstValueHandle const & key, ConstValueHandle const & value) {
+		if (valueHandle.getMetaType() == Meta::Type::BMAP) {
+			BMap & map = valueHandle;
+			map.insertElement(key, value);
+			return;
+		}
+		Map & map = valueHandle;
+		map.insertElement(key, value);
+	}
+
+	/* Remove the elements of a list, set or map, which is replaced by the JSON value. */
+	inline void clearCollection(ValueHandle const & valueHandle) {
+		switch (valueHandle.getMetaType()) {
+			case Meta::Type::LIST : {
+				List & list = valueHandle;
+				list.removeAllElements();
+				break;
+			}
+			case Meta::Type::BLIST : {
+				BList & list = valueHandle;
+				list.removeAllElements();
+				break;
+			}
+			case Meta::Type::SET : {
+				Set & set = valueHandle;
+				set.removeAllElements();
+				break;
+			}
+			case Meta::Type::BSET : {
+				BSet & set = valueHandle;
+				set.removeAllElements();
+				break;
+			}
+			case Meta::Type::MAP : {
+				Map & map = valueHandle;
+				map.removeAllElements();
+				break;
+			}
+			case Meta::Type::BMAP : {
+				BMap & map = valueHandle;
+				map.removeAllElements();
+				break;
+			}
+			default:
+				break;
+		}
+	}
+
+	/*
+	 * rapidjson SAX handler populating a tuple from a JSON object.
+	 * Each open object or array that is being converted has a frame on a stack,
+	 * values that cannot be converted are skipped by counting their nesting depth.
+	 */
+	class TupleHandler {
+	public:
+		explicit TupleHandler(Tuple & tuple) : root_(tuple), skip_(0) {}
+
+		~TupleHandler() {
+			// elements and keys not yet added when parsing failed
+			for (size_t i = 0; i < stack_.size(); i++) {
+				Frame & f = stack_[i];
+				if (f.hasTarget && f.tuple == NULL)
+					f.target.deleteValue();
+				if (f.owned)
+					f.value.deleteValue();
+			}
+		}
+
+		std::string const & getError() const { return error_; }
+
+		bool Null() { return value(NULL); }
+
+		bool Bool(bool b) {
+			JsonScalar v;
+			v.kind = JsonScalar::BOOL;
+			v.b = b;
+			return value(&v);
+		}
+
+		bool Int(int i) { return Int64(i); }
+
+		bool Uint(unsigned u) { return Int64(u); }
+
+		bool Int64(int64_t i) {
+			JsonScalar v;
+			v.kind = JsonScalar::INT64;
+			v.i = i;
+			return value(&v);
+		}
+
+		bool Uint64(uint64_t u) {
+			JsonScalar v;
+			v.kind = JsonScalar::UINT64;
+			v.u = u;
+			return value(&v);
+		}
+
+		bool Double(double d) {
+			JsonScalar v;
+			v.kind = JsonScalar::DOUBLE;
+			v.d = d;
+			return value(&v);
+		}
+
+		bool String(const char * str, SizeType length, bool) {
+			JsonScalar v;
+			v.kind = JsonScalar::STRING;
+			v.s = str;
+			v.length = length;
+			return value(&v);
+		}
+
+		bool Key(const char * str, SizeType length, bool) {
+			if (skip_ != 0)
+				return true;
+			Frame & f = stack_.back();
+			if (f.tuple != NULL) {
+				Tuple & tuple = *f.tuple;
+				const uint32_t count = tuple.getNumberOfAttributes();
+				// members usually follow the attribute order, so the search starts after the last match
+				for (uint32_t n = 0; n < count; n++) {
+					const uint32_t i = (f.next + n) % count;
+					std::string const & name = tuple.getAttributeName(i);
+					if (name.size() == length && memcmp(name.data(), str, length) == 0) {
+						f.target = tuple.getAttributeValue(i);
+						f.hasTarget = true;
+						f.next = i + 1;
+						return true;
+					}
+				}
+				f.hasTarget = false;
+				return true;
+			}
+			// map key converted from the member name
+			JsonScalar v;
+			v.kind = JsonScalar::STRING;
+			v.s = str;
+			v.length = length;
+			ValueHandle key = createMapKey(f.value);
+			f.hasTarget = assignScalar(key, v);
+			if (f.hasTarget)
+				f.target = key;
+			else
+				key.deleteValue();
+			return true;
+		}
+
+		bool StartObject() { return start(true); }
+
+		bool EndObject(SizeType) { return end(); }
+
+		bool StartArray() { return start(false); }
+
+		bool EndArray(SizeType) { return end(); }
+
+	private:
+		struct Frame {
+			// tuple being populated, or NULL for a list, set or map
+			Tuple * tuple;
+			// tuple, list, set or map being populated, not set for the root tuple
+			ValueHandle value;
+			// value is a new element of the enclosing list, set or map, added to it when complete
+			bool owned;
+			// tuple: attribute of the current member, map: key of the current member
+			ValueHandle target;
+			bool hasTarget;
+			// tuple: index of the attribute expected to match the next member
+			uint32_t next;
+		};
+
+		void push(ValueHandle const & value, bool owned) {
+			Frame f;
+			f.tuple = NULL;
+			if (value.getMetaType() == Meta::Type::TUPLE) {
+				Tuple & tuple = value;
+				f.tuple = &tuple;
+			}
+			f.value = value;
+			f.owned = owned;
+			f.hasTarget = false;
+			f.next = 0;
+			stack_.push_back(f);
+		}
+
+		/* The member of a map is complete, release its key. */
+		void releaseKey(Frame & f) {
+			if (f.hasTarget) {
+				f.target.deleteValue();
+				f.hasTarget = false;
+			}
+		}
+
+		bool value(JsonScalar const * v) {
+			if (skip_ != 0)
+				return true;
+			if (stack_.empty()) {
+				error_ = "expected a JSON object";
+				return false;
+			}
+			Frame & f = stack_.back();
+			if (f.tuple != NULL) {
+				if (f.hasTarget && v != NULL)
+					assignScalar(f.target, *v);
+				f.hasTarget = false;
+				return true;
+			}
+			switch (f.value.getMetaType()) {
+				case Meta::Type::MAP :
+				case Meta::Type::BMAP :
+					if (f.hasTarget && v != NULL) {
+						ValueHandle element = createMapValue(f.value);
+						if (assignScalar(element, *v))
+							insertMapElement(f.value, f.target, element);
+						element.deleteValue();
+					}
+					releaseKey(f);
+					break;
+				default:
+					if (v != NULL) {
+						ValueHandle element = createElement(f.value);
+						if (assignScalar(element, *v))
+							addElement(f.value, element);
+						element.deleteValue();
+					}
+			}
+			return true;
+		}
+
+		bool start(bool object) {
+			if (skip_ != 0) {
+				skip_++;
+				return true;
+			}
+			if (stack_.empty()) {
+				if (!object) {
+					error_ = "expected a JSON object";
+					return false;
+				}
+				Frame root;
+				root.tuple = &root_;
+				root.owned = false;
+				root.hasTarget = false;
+				root.next = 0;
+				stack_.push_back(root);
+				return true;
+			}
+			Frame & f = stack_.back();
+			ValueHandle target;
+			bool owned = true;
+			if (f.tuple != NULL) {
+				owned = false;
+				if (f.hasTarget)
+					target = f.target;
+				f.hasTarget = false;
+			} else if (f.value.getMetaType() == Meta::Type::MAP || f.value.getMetaType() == Meta::Type::BMAP) {
+				// the key is held until the value is complete
+				if (f.hasTarget)
+					target = createMapValue(f.value);
+				else
+					owned = false;
+			} else {
+				target = createElement(f.value);
+			}
+			const Meta::Type type = target.getMetaType();
+			if (object ? !isObjectType(type) : !isArrayType(type)) {
+				if (owned)
+					target.deleteValue();
+				if (f.tuple == NULL)
+					releaseKey(f);
+				skip_ = 1;
+				return true;
+			}
+			if (!owned)
+				clearCollection(target);
+			push(target, owned);
+			return true;
+		}
+
+		bool end() {
+			if (skip_ != 0) {
+				skip_--;
+				return true;
+			}
+			Frame f = stack_.back();
+			stack_.pop_back();
+			if (f.owned) {
+				Frame & parent = stack_.back();
+				if (parent.tuple == NULL && (parent.value.getMetaType() == Meta::Type::MAP || parent.value.getMetaType() == Meta::Type::BMAP)) {
+					insertMapElement(parent.value, parent.target, f.value);
+					releaseKey(parent);
+				} else {
+					addElement(parent.value, f.value);
+				}
+				f.value.deleteValue();
+			}
+			return true;
+		}
+
+		Tuple & root_;
+		std::vector<Frame> stack_;
+		// nesting depth within an object or array being skipped
+		int skip_;
+		std::string error_;
+	};
+
+	/*
+	 * Output of the conversions to JSON.
+	 *
+	 * Each thread has a buffer and writer that are reused for every conversion,
+	 * the buffer keeps the capacity of the largest JSON it has held so in the
+	 * steady state serialization does not allocate memory. A buffer grown beyond
+	 * maxRetainedCapacity, such as for a large list of tuples, is released once
+	 * the JSON has been copied out so each thread does not hold its largest conversion.
+	 */
+	struct JsonOutput {
+		static const size_t maxRetainedCapacity = 1024 * 1024;
+
+		StringBuffer buffer;
+		Writer<StringBuffer> writer;
+
+		JsonOutput() : buffer(0, 4096), writer(buffer) {}
+
+		/* Release the buffer if it has grown beyond maxRetainedCapacity, its content is discarded. */
+		void trim() {
+			if (buffer.stack_.GetCapacity() > maxRetainedCapacity) {
+				buffer.Clear();
+				// an empty stack frees its memory and is next allocated with the initial capacity
+				buffer.stack_.ShrinkToFit();
+			}
+		}
+	};
+
+	/* A value of type T for each thread, created on first use and deleted when the thread exits. */
+	template<class T>
+	struct ThreadLocal {
+
+		static T & get() {
+
+			static pthread_once_t once = PTHREAD_ONCE_INIT;
+			pthread_once(&once, createKey);
+
+			T * value = static_cast<T *>(pthread_getspecific(key()));
+			if (value == NULL) {
+				value = new T();
+				pthread_setspecific(key(), value);
+			}
+			return *value;
+		}
+
+	private:
+		static pthread_key_t & key() {
+			static pthread_key_t key;
+			return key;
+		}
+
+		static void createKey() {
+			pthread_key_create(&key(), destroy);
+		}
+
+		static void destroy(void * value) {
+			delete static_cast<T *>(value);
+		}
+	};
+
+	/* The empty output of the calling thread. */
+	inline JsonOutput & jsonOutput() {
+
+		JsonOutput & output = ThreadLocal<JsonOutput>::get();
+		output.trim();
+		output.buffer.Clear();
+		output.writer.Reset(output.buffer);
+		return output;
+	}
+
+	/* Attribute names of a tuple as the escaped JSON member names followed by a colon. */
+	inline std::vector<std::string> memberNames(Tuple const & tuple) {
+
+		std::vector<std::string> names;
+		StringBuffer s;
+		for (uint32_t i = 0; i < tuple.getNumberOfAttributes(); i++) {
+			std::string const & name = tuple.getAttributeName(i);
+			Writer<StringBuffer> writer(s);
+			writer.String(name.data(), static_cast<SizeType>(name.size()));
+			s.Put(':');
+			names.push_back(std::string(s.GetString(), s.GetSize()));
+			s.Clear();
+		}
+		return names;
+	}
+
+	/*
+	 * Write a tuple as a JSON object, the member names are escaped once per tuple type T.
+	 * Each attribute value is written as a separate root value of the writer
+	 * as the member names are written directly to the buffer.
+	 */
+	template<class T>
+	inline void writeTupleObject(JsonOutput & output, T const & tuple) {
+
+		static const std::vector<std::string> names = memberNames(tuple);
+
+		StringBuffer & buffer = output.buffer;
+		buffer.Put('{');
+		for (uint32_t i = 0; i < names.size(); i++) {
+			if (i != 0)
+				buffer.Put(',');
+			std::string const & name = names[i];
+			std::memcpy(buffer.Push(name.size()), name.data(), name.size());
+			output.writer.Reset(buffer);
+			writeAny(output.writer, tuple.getAttributeValue(i));
+		}
+		buffer.Put('}');
+	}
+
+	/* A generic tuple may be of any type so its names are not cached. */
+	template<>
+	inline void writeTupleObject<Tuple>(JsonOutput & output, Tuple const & tuple) {
+
+		output.writer.Reset(output.buffer);
+		writeAny(output.writer, ConstValueHandle(tuple));
+	}
+
+	/*
+	 * Write a list of tuples as a JSON array, or as newline delimited JSON
+	 * with each object on its own line. Once the first tuple is written the
+	 * buffer is grown to the size estimated for the whole list so it is not
+	 * repeatedly expanded for large lists.
+	 */
+	template<class T>
+	inline void writeTupleList(JsonOutput & output, SPL::list<T> const & tuples, bool ndjson) {
+
+		StringBuffer & buffer = output.buffer;
+		const size_t count = tuples.size();
+		if (!ndjson)
+			buffer.Put('[');
+		for (size_t i = 0; i < count; i++) {
+			if (i != 0 && !ndjson)
+				buffer.Put(',');
+			writeTupleObject(output, tuples[i]);
+			if (ndjson)
+				buffer.Put('\n');
+			if (i == 0 && count > 1) {
+				// remaining tuples plus an eighth for variation in their sizes
+				const size_t remaining = (buffer.GetSize() + 1) * (count - 1);
+				const size_t estimate = remaining + remaining / 8;
+				buffer.Push(estimate);
+				buffer.Pop(estimate);
+			}
+		}
+		if (!ndjson)
+			buffer.Put(']');
+	}
+
+	template<class T>
+	inline SPL::rstring tupleToJSON(T const& tuple) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleObject(output, tuple);
+
+		return SPL::rstring(output.buffer.GetString(), output.buffer.GetSize());
+	}
+
+	template<class T>
+	inline void appendJSON(SPL::rstring & json, T const& tuple) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleObject(output, tuple);
+
+		json.append(output.buffer.GetString(), output.buffer.GetSize());
+	}
+
+	template<class T>
+	inline void appendJSON(SPL::blob & json, T const& tuple) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleObject(output, tuple);
+
+		json.append(reinterpret_cast<const unsigned char *>(output.buffer.GetString()), output.buffer.GetSize());
+	}
+
+	template<class T>
+	inline SPL::rstring tuplesToJSON(SPL::list<T> const& tuples) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleList(output, tuples, false);
+
+		SPL::rstring json(output.buffer.GetString(), output.buffer.GetSize());
+		output.trim();
+		return json;
+	}
+
+	template<class T>
+	inline void tuplesToJSON(SPL::list<T> const& tuples, SPL::blob & json) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleList(output, tuples, false);
+
+		json.setData(reinterpret_cast<const unsigned char *>(output.buffer.GetString()), output.buffer.GetSize());
+		output.trim();
+	}
+
+	template<class T>
+	inline SPL::rstring tuplesToNDJSON(SPL::list<T> const& tuples) {
+
+		JsonOutput & output = jsonOutput();
+
+		writeTupleList(output, tuples, true);
 
-	    StringBuffer s;
-	    Writer<StringBuffer> writer(s);
+		SPL::rstring json(output.buffer.GetString(), output.buffer.GetSize());
+		output.trim();
+		return json;
+	}
+
+	template<class T>
+	inline void tuplesToNDJSON(SPL::list<T> const& tuples, SPL::blob & json) {
+
+		JsonOutput & output = jsonOutput();
 
-		writeAny(writer, ConstValueHandle(tuple));
+		writeTupleList(output, tuples, true);
 
-		return s.GetString();
+		json.setData(reinterpret_cast<const unsigned char *>(output.buffer.GetString()), output.buffer.GetSize());
+		output.trim();
 	}
 
 	template<class MAP>
 	inline SPL::rstring mapToJSON(MAP const& map) {
 
-	    StringBuffer s;
-	    Writer<StringBuffer> writer(s);
+		JsonOutput & output = jsonOutput();
 
-		writeAny(writer, ConstValueHandle(map));
+		writeAny(output.writer, ConstValueHandle(map));
 
-		return s.GetString();
+		return SPL::rstring(output.buffer.GetString(), output.buffer.GetSize());
 	}
 
 	template<class String, class SPLAny>
 	inline SPL::rstring toJSON(String const& key, SPLAny const& splAny) {
 
-
-	    StringBuffer s;
-	    Writer<StringBuffer> writer(s);
+		JsonOutput & output = jsonOutput();
+		Writer<StringBuffer> & writer = output.writer;
 
 		writer.StartObject();
 
@@ -288,7 +1146,400 @@ namespace com { namespace ibm { namespace streamsx { namespace json {
 
 		writer.EndObject();
 
-		return s.GetString();
+		return SPL::rstring(output.buffer.GetString(), output.buffer.GetSize());
+	}
+
+	template<class T>
+	inline SPL::int32 jsonToTuple(SPL::rstring const& json, T & tuple, SPL::rstring & error) {
+
+		TupleHandler handler(tuple);
+		rapidjson::Reader reader;
+		StringStream s(json.c_str());
+
+		ParseResult ok = reader.Parse<rapidjson::kParseFullPrecisionFlag>(s, handler);
+		if (ok) {
+			error = "";
+			return 0;
+		}
+
+		std::ostringstream msg;
+		msg << "JSON syntax error at offset " << ok.Offset() << ": ";
+		if (handler.getError().empty())
+			msg << GetParseError_En(ok.Code());
+		else
+			msg << handler.getError();
+		error = msg.str();
+		return ok.Code();
+	}
+
+	template<class T>
+	inline void jsonToTuple(SPL::rstring const& json, T & tuple) {
+
+		SPL::rstring error;
+		if (jsonToTuple(json, tuple, error) != 0)
+			throw SPLRuntimeInvalidArgumentException("jsonToTuple", error);
+	}
+
+	/*
+	 * Extraction of values from JSON by path.
+	 *
+	 * Paths have the same form as the JSON paths of the JSONToTuple operator, for example
+	 * $.a.b[0]['c.d'], and are compiled into a tree with a node for each member or
+	 * element on a path. The JSON is parsed by a rapidjson SAX handler that follows the
+	 * tree, skipping all other values, and parsing stops as soon as every path has been
+	 * resolved, either to a value or because the object or array that would contain it
+	 * has ended.
+	 */
+
+	/* A member or element on the paths of a query. */
+	struct QueryNode {
+		// kind of value containing the children: -1 for a leaf, 0 for an object, 1 for an array
+		int kind;
+		// children by member name or element index
+		std::vector<std::pair<std::string, int> > members;
+		std::vector<std::pair<SizeType, int> > elements;
+		// paths selecting this value
+		std::vector<int> selected;
+		// paths selecting this value or a value within it
+		std::vector<int> targets;
+
+		QueryNode() : kind(-1) {}
+	};
+
+	/* Compiled paths of a query, node 0 is the root of the JSON. */
+	struct JsonQuery {
+		std::vector<QueryNode> nodes;
+		int paths;
+
+		JsonQuery() : nodes(1), paths(0) {}
+
+		/* Add a path, throwing SPLRuntimeInvalidArgumentException if it is not valid. */
+		void add(std::string const & path) {
+
+			const int target = paths++;
+			if (path.empty() || path[0] != '$')
+				invalidPath(path, "must start with $");
+			int node = 0;
+			size_t i = 1;
+			while (i < path.size()) {
+				std::string name;
+				SizeType index = 0;
+				bool element = false;
+				if (path[i] == '.') {
+					const size_t start = ++i;
+					while (i < path.size() && path[i] != '.' && path[i] != '[')
+						i++;
+					if (i == start)
+						invalidPath(path, "empty member name");
+					name = path.substr(start, i - start);
+				} else if (path[i] == '[') {
+					const size_t close = path.find(']', i);
+					if (close == std::string::npos)
+						invalidPath(path, "missing ]");
+					size_t start = i + 1;
+					size_t end = close;
+					while (start < end && path[start] == ' ')
+						start++;
+					while (end > start && path[end - 1] == ' ')
+						end--;
+					if (end - start >= 2 && (path[start] == '\'' || path[start] == '"') && path[end - 1] == path[start]) {
+						name = path.substr(start + 1, end - start - 2);
+					} else {
+						if (start == end || end - start > 9 || path.find_first_not_of("0123456789", start) < end)
+							invalidPath(path, "invalid index " + path.substr(start, end - start));
+						index = static_cast<SizeType>(strtoul(path.c_str() + start, NULL, 10));
+						element = true;
+					}
+					i = close + 1;
+				} else {
+					invalidPath(path, std::string("unexpected character '") + path[i] + "'");
+				}
+
+				if (nodes[node].kind == -1)
+					nodes[node].kind = element ? 1 : 0;
+				else if (nodes[node].kind != (element ? 1 : 0))
+					invalidPath(path, "conflicts with another path");
+				nodes[node].targets.push_back(target);
+				node = child(node, name, index, element);
+			}
+			if (node == 0)
+				invalidPath(path, "path must select a member or element");
+			nodes[node].selected.push_back(target);
+			nodes[node].targets.push_back(target);
+		}
+
+		/* Child of a node for a member or element, -1 if it is not on any path. */
+		int find(int node, const char * name, SizeType length) const {
+			std::vector<std::pair<std::string, int> > const & members = nodes[node].members;
+			for (size_t i = 0; i < members.size(); i++) {
+				if (members[i].first.size() == length && memcmp(members[i].first.data(), name, length) == 0)
+					return members[i].second;
+			}
+			return -1;
+		}
+
+		int find(int node, SizeType index) const {
+			std::vector<std::pair<SizeType, int> > const & elements = nodes[node].elements;
+			for (size_t i = 0; i < elements.size(); i++) {
+				if (elements[i].first == index)
+					return elements[i].second;
+			}
+			return -1;
+		}
+
+	private:
+		int child(int node, std::string const & name, SizeType index, bool element) {
+			int c = element ? find(node, index) : find(node, name.data(), static_cast<SizeType>(name.size()));
+			if (c != -1)
+				return c;
+			c = static_cast<int>(nodes.size());
+			nodes.push_back(QueryNode());
+			if (element)
+				nodes[node].elements.push_back(std::make_pair(index, c));
+			else
+				nodes[node].members.push_back(std::make_pair(name, c));
+			return c;
+		}
+
+		static void invalidPath(std::string const & path, std::string const & detail) {
+			throw SPLRuntimeInvalidArgumentException("queryJSON", "Invalid JSON path " + path + ": " + detail);
+		}
+	};
+
+	/* Queries compiled by the calling thread, keyed by their paths. */
+	struct JsonQueries {
+		std::map<std::string, JsonQuery> queries;
+		std::string key;
+
+		JsonQuery const & get(std::string const & key, SPL::list<SPL::rstring> const * paths) {
+
+			std::map<std::string, JsonQuery>::iterator it = queries.find(key);
+			if (it != queries.end())
+				return it->second;
+
+			JsonQuery query;
+			if (paths == NULL) {
+				query.add(key);
+			} else {
+				for (size_t i = 0; i < paths->size(); i++)
+					query.add((*paths)[i]);
+			}
+			// paths are normally constants, the cache is only bounded for generated paths
+			if (queries.size() >= 256)
+				queries.clear();
+			return queries.insert(std::make_pair(key, query)).first->second;
+		}
+	};
+
+	/*
+	 * rapidjson SAX handler assigning the values selected by a query, either
+	 * to a single value or to the attribute of a tuple with the index of each path.
+	 */
+	class QueryHandler {
+	public:
+		QueryHandler(JsonQuery const & query, ValueHandle const * value, Tuple * tuple) :
+			query_(query), value_(value), tuple_(tuple), done_(query.paths, false), remaining_(query.paths), found_(0), skip_(0) {}
+
+		/* True if every path has been resolved. */
+		bool isComplete() const { return remaining_ == 0; }
+
+		/* Number of paths whose value was assigned. */
+		int getFound() const { return found_; }
+
+		bool Null() { return value(NULL); }
+
+		bool Bool(bool b) {
+			JsonScalar v;
+			v.kind = JsonScalar::BOOL;
+			v.b = b;
+			return value(&v);
+		}
+
+		bool Int(int i) { return Int64(i); }
+
+		bool Uint(unsigned u) { return Int64(u); }
+
+		bool Int64(int64_t i) {
+			JsonScalar v;
+			v.kind = JsonScalar::INT64;
+			v.i = i;
+			return value(&v);
+		}
+
+		bool Uint64(uint64_t u) {
+			JsonScalar v;
+			v.kind = JsonScalar::UINT64;
+			v.u = u;
+			return value(&v);
+		}
+
+		bool Double(double d) {
+			JsonScalar v;
+			v.kind = JsonScalar::DOUBLE;
+			v.d = d;
+			return value(&v);
+		}
+
+		bool String(const char * str, SizeType length, bool) {
+			JsonScalar v;
+			v.kind = JsonScalar::STRING;
+			v.s = str;
+			v.length = length;
+			return value(&v);
+		}
+
+		bool Key(const char * str, SizeType length, bool) {
+			if (skip_ == 0) {
+				Frame & f = stack_.back();
+				f.pending = query_.find(f.node, str, length);
+			}
+			return true;
+		}
+
+		bool StartObject() { return start(0); }
+
+		bool EndObject(SizeType) { return end(); }
+
+		bool StartArray() { return start(1); }
+
+		bool EndArray(SizeType) { return end(); }
+
+	private:
+		struct Frame {
+			int node;
+			// index of the next element of an array
+			SizeType index;
+			// node of the value of the current member of an object, or -1
+			int pending;
+		};
+
+		/* Node selected by the next value, or -1. */
+		int next() {
+			if (stack_.empty())
+				return 0;
+			Frame & f = stack_.back();
+			if (query_.nodes[f.node].kind == 1)
+				return query_.find(f.node, f.index++);
+			const int node = f.pending;
+			f.pending = -1;
+			return node;
+		}
+
+		/* The paths to a node cannot be resolved further. */
+		bool resolve(int node) {
+			std::vector<int> const & targets = query_.nodes[node].targets;
+			for (size_t i = 0; i < targets.size(); i++) {
+				if (!done_[targets[i]]) {
+					done_[targets[i]] = true;
+					remaining_--;
+				}
+			}
+			return remaining_ != 0;
+		}
+
+		bool value(JsonScalar const * v) {
+			if (skip_ != 0)
+				return true;
+			const int node = next();
+			if (node == -1)
+				return true;
+			std::vector<int> const & selected = query_.nodes[node].selected;
+			for (size_t i = 0; v != NULL && i < selected.size(); i++) {
+				const int target = selected[i];
+				if (done_[target])
+					continue;
+				const bool assigned = tuple_ != NULL ?
+					assignScalar(tuple_->getAttributeValue(target), *v) : assignScalar(*value_, *v);
+				if (assigned)
+					found_++;
+			}
+			return resolve(node);
+		}
+
+		bool start(int kind) {
+			if (skip_ != 0) {
+				skip_++;
+				return true;
+			}
+			const int node = next();
+			if (node == -1) {
+				skip_ = 1;
+				return true;
+			}
+			if (query_.nodes[node].kind != kind) {
+				// objects and arrays are only containers of paths, not values
+				skip_ = 1;
+				return resolve(node);
+			}
+			Frame f;
+			f.node = node;
+			f.index = 0;
+			f.pending = -1;
+			stack_.push_back(f);
+			return true;
+		}
+
+		bool end() {
+			if (skip_ != 0) {
+				skip_--;
+				return true;
+			}
+			const int node = stack_.back().node;
+			stack_.pop_back();
+			return resolve(node);
+		}
+
+		JsonQuery const & query_;
+		ValueHandle const * value_;
+		Tuple * tuple_;
+		std::vector<bool> done_;
+		int remaining_;
+		int found_;
+		std::vector<Frame> stack_;
+		int skip_;
+	};
+
+	/* Parse until every path of the query is resolved, returns false if the JSON is not valid before then. */
+	inline bool runQuery(SPL::rstring const& json, QueryHandler & handler) {
+
+		rapidjson::Reader reader;
+		StringStream s(json.c_str());
+
+		ParseResult ok = reader.Parse<rapidjson::kParseFullPrecisionFlag>(s, handler);
+		return ok || handler.isComplete();
+	}
+
+	template<class T>
+	inline T queryJSON(SPL::rstring const& json, SPL::rstring const& path, T const& defaultValue) {
+
+		JsonQuery const & query = ThreadLocal<JsonQueries>::get().get(path, NULL);
+
+		T result = defaultValue;
+		ValueHandle value(result);
+		QueryHandler handler(query, &value, NULL);
+		if (!runQuery(json, handler) || handler.getFound() == 0)
+			return defaultValue;
+		return result;
+	}
+
+	template<class T>
+	inline SPL::int32 queryJSON(SPL::rstring const& json, SPL::list<SPL::rstring> const& paths, T & values) {
+
+		if (paths.size() > values.getNumberOfAttributes())
+			throw SPLRuntimeInvalidArgumentException("queryJSON", "More paths than attributes");
+
+		JsonQueries & queries = ThreadLocal<JsonQueries>::get();
+		queries.key.clear();
+		for (size_t i = 0; i < paths.size(); i++) {
+			queries.key.append(paths[i]);
+			queries.key.push_back('\0');
+		}
+		JsonQuery const & query = queries.get(queries.key, &paths);
+
+		QueryHandler handler(query, NULL, &values);
+		if (!runQuery(json, handler))
+			return -1;
+		return handler.getFound();
 	}
 
 }}}}
@@ -0,0 +1,199 @@
+//
+// *******************************************************************************
+// * Copyright (C)2014, International Business Machines Corporation and *
+// * others. All Rights Reserved. *
+// *******************************************************************************
+//
+package com.ibm.streamsx.json;
+
+import java.util.Arrays;
+
+/**
+ * Splits a stream of UTF-8 encoded JSON documents that arrives in arbitrary
+ * chunks into complete documents.
+ * <p>
+ * Each chunk is scanned once and the state of the scan, the nesting depth
+ * and whether it is within a string, carries over to the next chunk.
+ * Documents are JSON objects or arrays separated by optional whitespace.
+ * A document contained within a single chunk is passed to the handler
+ * directly from the chunk, only the bytes of a document that spans chunks
+ * are buffered, up to a maximum document size.
+ * <p>
+ * Not thread safe, chunks must be added by a single thread in stream order.
+ */
+final class ChunkedDocuments {
+
+	/**
+	 * Receives the documents and errors found in the stream,
+	 * the bytes passed are only valid for the duration of the call.
+	 */
+	interface Handler {
+		/** A complete document held in {@code buf[off..off+len)}. */
+		void document(byte[] buf, int off, int len) throws Exception;
+		/**
+		 * Input that is not a document, or the start of a document that
+		 * exceeds the maximum size, held in {@code buf[off..off+len)}.
+		 */
+		void error(String detail, byte[] buf, int off, int len) throws Exception;
+	}
+
+	/* Scan states between and within documents. */
+	private static final int BETWEEN = 0;
+	private static final int DOCUMENT = 1;
+	/** Skipping the remainder of a document that exceeded the maximum size. */
+	private static final int DISCARD = 2;
+	/** Skipping input that cannot start a document, up to the next whitespace or document. */
+	private static final int INVALID = 3;
+
+	private final int maxDocumentSize;
+	private int state = BETWEEN;
+	private int depth;
+	private boolean inString;
+	private boolean escape;
+	/** Bytes of the document in progress from previous chunks. */
+	private byte[] buf = new byte[0];
+	private int count;
+
+	ChunkedDocuments(int maxDocumentSize) {
+		this.maxDocumentSize = maxDocumentSize;
+	}
+
+	/**
+	 * True if a document has been started but not completed.
+	 */
+	boolean isPending() {
+		return state == DOCUMENT || state == DISCARD;
+	}
+
+	/**
+	 * Discard any document in progress.
+	 */
+	void reset() {
+		state = BETWEEN;
+		count = 0;
+	}
+
+	/**
+	 * Scan the next chunk {@code data[off..off+len)} of the stream,
+	 * passing each document completed within it to {@code handler}.
+	 */
+	void add(byte[] data, int off, int len, Handler handler) throws Exception {
+		final int end = off + len;
+		// start of the current document or invalid input within this chunk
+		int start = off;
+		for (int i = off; i < end; i++) {
+			final byte c = data[i];
+			switch (state) {
+			case BETWEEN:
+				if (c == '{' || c == '[') {
+					state = DOCUMENT;
+					depth = 1;
+					inString = false;
+					escape = false;
+					start = i;
+				} else if (!isWhitespace(c)) {
+					state = INVALID;
+					start = i;
+				}
+				break;
+
+			case INVALID:
+				if (isWhitespace(c) || c == '{' || c == '[') {
+					invalid(data, start, i, handler);
+					i--; // rescan as the start of a document or whitespace
+				}
+				break;
+
+			default:
+				if (inString) {
+					if (escape)
+						escape = false;
+					else if (c == '\\')
+						escape = true;
+					else if (c == '"')
+						inString = false;
+					break;
+				}
+				if (c == '"') {
+					inString = true;
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if ((c == '}' || c == ']') && --depth == 0) {
+					complete(data, start, i + 1, handler);
+				}
+				break;
+			}
+		}
+
+		// carry over the part of a document or invalid input in this chunk
+		switch (state) {
+		case DOCUMENT:
+			if (count + end - start > maxDocumentSize) {
+				oversized(data, start, end, true, handler);
+				break;
+			}
+			append(data, start, end);
+			break;
+		case INVALID:
+			if (count + end - start > maxDocumentSize)
+				invalid(data, start, end, handler);
+			else
+				append(data, start, end);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void complete(byte[] data, int start, int end, Handler handler) throws Exception {
+		final int state = this.state;
+		this.state = BETWEEN;
+		if (state == DISCARD)
+			return;
+		if (count + end - start > maxDocumentSize) {
+			oversized(data, start, end, false, handler);
+			return;
+		}
+		if (count == 0) {
+			handler.document(data, start, end - start);
+			return;
+		}
+		append(data, start, end);
+		final int len = count;
+		count = 0;
+		handler.document(buf, 0, len);
+	}
+
+	/**
+	 * Report a document that exceeds the maximum size with the
+	 * bytes up to the maximum.
+	 * @param remaining True if the document continues in later chunks and its remainder is skipped.
+	 */
+	private void oversized(byte[] data, int start, int end, boolean remaining, Handler handler) throws Exception {
+		append(data, start, start + Math.min(end - start, maxDocumentSize - count));
+		final int len = count;
+		count = 0;
+		state = remaining ? DISCARD : BETWEEN;
+		handler.error("document exceeds the maximum size of " + maxDocumentSize + " bytes", buf, 0, len); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void invalid(byte[] data, int start, int end, Handler handler) throws Exception {
+		append(data, start, end);
+		final int len = count;
+		count = 0;
+		state = BETWEEN;
+		handler.error("expected a JSON object or array", buf, 0, len); //$NON-NLS-1$
+	}
+
+	private void append(byte[] data, int start, int end) {
+		final int len = end - start;
+		if (count + len > buf.length)
+			buf = Arrays.copyOf(buf, Math.max(count + len, Math.min(maxDocumentSize, buf.length * 2)));
+		System.arraycopy(data, start, buf, count, len);
+		count += len;
+	}
+
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+}
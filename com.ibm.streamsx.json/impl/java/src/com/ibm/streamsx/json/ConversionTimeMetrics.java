@@ -0,0 +1,65 @@
+//
+// *******************************************************************************
+// * Copyright (C)2014, International Business Machines Corporation and *
+// * others. All Rights Reserved. *
+// *******************************************************************************
+//
+package com.ibm.streamsx.json;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+
+/**
+ * Custom metrics for the time taken to convert each input tuple,
+ * a rolling average and the maximum in nanoseconds.
+ * <p>
+ * The rolling average is an exponentially weighted moving average
+ * over approximately the last 32 tuples. Updates may be made concurrently,
+ * as by conversions on the threads calling process. Each sample is
+ * applied once using compare and set, the average metric may briefly show
+ * the value from a concurrent update and the maximum metric is rewritten
+ * until it matches the largest sample.
+ */
+final class ConversionTimeMetrics {
+
+	/** Weight of each new sample in the average is {@code 1/2^AVERAGE_SHIFT}. */
+	private static final int AVERAGE_SHIFT = 5;
+
+	private final Metric average;
+	private final Metric maximum;
+	/** Average scaled by {@code 2^AVERAGE_SHIFT} to keep precision in integer arithmetic, -1 before the first sample. */
+	private final AtomicLong scaledAverage = new AtomicLong(-1);
+	private final AtomicLong max = new AtomicLong();
+
+	ConversionTimeMetrics(OperatorMetrics metrics) {
+		average = metrics.createCustomMetric("avgConversionNanos", //$NON-NLS-1$
+				"Rolling average of the time in nanoseconds to convert an input tuple.", Metric.Kind.GAUGE); //$NON-NLS-1$
+		maximum = metrics.createCustomMetric("maxConversionNanos", //$NON-NLS-1$
+				"Maximum time in nanoseconds to convert an input tuple.", Metric.Kind.GAUGE); //$NON-NLS-1$
+	}
+
+	/**
+	 * Record the conversion time of a tuple.
+	 */
+	void update(long nanos) {
+		long current, next;
+		do {
+			current = scaledAverage.get();
+			next = current < 0 ? nanos << AVERAGE_SHIFT : current + nanos - (current >> AVERAGE_SHIFT);
+		} while (!scaledAverage.compareAndSet(current, next));
+		average.setValue(next >> AVERAGE_SHIFT);
+
+		while (nanos > (current = max.get())) {
+			if (max.compareAndSet(current, nanos)) {
+				// a concurrent larger sample may have been set first, recheck after writing
+				do {
+					current = max.get();
+					maximum.setValue(current);
+				} while (max.get() != current);
+				break;
+			}
+		}
+	}
+}
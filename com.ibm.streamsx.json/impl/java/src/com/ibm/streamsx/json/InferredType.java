@@ -0,0 +1,256 @@
+//
+// *******************************************************************************
+// * Copyright (C)2014, International Business Machines Corporation and *
+// * others. All Rights Reserved. *
+// *******************************************************************************
+//
+package com.ibm.streamsx.json;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.streamsx.json.converters.JSONReader;
+
+/**
+ * Statistics of the JSON values seen at one position in a set of
+ * sample documents, from which the SPL type for the position is inferred.
+ * <p>
+ * The kinds of value seen are counted, along with the range of integers,
+ * the maximum length of strings and arrays, the statistics of each member of
+ * objects and of the elements of arrays. Statistics for separate samples are
+ * combined with {@link #merge(InferredType)}, so samples can be scanned in parallel.
+ * <p>
+ * The inferred type is the narrowest SPL type that holds all the values seen,
+ * integers are {@code int64}, widened to {@code float64} if any value has a fraction, and
+ * mixed kinds of values are read as {@code rstring}, as JSONToTuple reads
+ * any JSON value into a string attribute.
+ */
+final class InferredType {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/** Number of documents that could not be parsed, only counted for the root of the documents. */
+	long invalid;
+	/** Number of values, including nulls. */
+	long count;
+	long nulls;
+	long booleans;
+	long integers;
+	long floats;
+	long strings;
+	long objects;
+	long arrays;
+
+	long minInteger = Long.MAX_VALUE;
+	long maxInteger = Long.MIN_VALUE;
+	/** Maximum length in UTF-8 bytes of strings. */
+	int maxStringLength;
+	int maxArrayLength;
+
+	/** Members of objects, in the order first seen. */
+	final Map<String, InferredType> members = new LinkedHashMap<>();
+	/** Elements of arrays. */
+	InferredType elements;
+
+	/**
+	 * Add the next value from {@code reader}.
+	 */
+	void add(JSONReader reader) throws IOException {
+		count++;
+		switch (reader.peek()) {
+		case JSONReader.NULL:
+			reader.nextNull();
+			nulls++;
+			break;
+		case JSONReader.BOOLEAN:
+			reader.nextBoolean();
+			booleans++;
+			break;
+		case JSONReader.NUMBER:
+			addNumber(reader.nextString());
+			break;
+		case JSONReader.STRING:
+			maxStringLength = Math.max(maxStringLength, utf8Length(reader.nextString()));
+			strings++;
+			break;
+		case JSONReader.OBJECT:
+			objects++;
+			reader.beginObject();
+			while (reader.hasNextMember()) {
+				final String name = reader.nextName();
+				InferredType member = members.get(name);
+				if (member == null)
+					members.put(name, member = new InferredType());
+				member.add(reader);
+			}
+			break;
+		case JSONReader.ARRAY:
+		{
+			arrays++;
+			if (elements == null)
+				elements = new InferredType();
+			int length = 0;
+			reader.beginArray();
+			while (reader.hasNextElement()) {
+				elements.add(reader);
+				length++;
+			}
+			maxArrayLength = Math.max(maxArrayLength, length);
+			break;
+		}
+		default:
+			throw new IOException("unexpected end of input"); //$NON-NLS-1$
+		}
+	}
+
+	private void addNumber(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E') {
+				floats++;
+				return;
+			}
+		}
+		try {
+			final long value = Long.parseLong(text);
+			minInteger = Math.min(minInteger, value);
+			maxInteger = Math.max(maxInteger, value);
+			integers++;
+		} catch (NumberFormatException e) {
+			// beyond the range of int64
+			floats++;
+		}
+	}
+
+	/**
+	 * Add the statistics of {@code other} to this.
+	 */
+	void merge(InferredType other) {
+		invalid += other.invalid;
+		count += other.count;
+		nulls += other.nulls;
+		booleans += other.booleans;
+		integers += other.integers;
+		floats += other.floats;
+		strings += other.strings;
+		objects += other.objects;
+		arrays += other.arrays;
+		minInteger = Math.min(minInteger, other.minInteger);
+		maxInteger = Math.max(maxInteger, other.maxInteger);
+		maxStringLength = Math.max(maxStringLength, other.maxStringLength);
+		maxArrayLength = Math.max(maxArrayLength, other.maxArrayLength);
+		for (Map.Entry<String, InferredType> e : other.members.entrySet()) {
+			InferredType member = members.get(e.getKey());
+			if (member == null)
+				members.put(e.getKey(), e.getValue());
+			else
+				member.merge(e.getValue());
+		}
+		if (other.elements != null) {
+			if (elements == null)
+				elements = other.elements;
+			else
+				elements.merge(other.elements);
+		}
+	}
+
+	/**
+	 * True if only objects (and nulls) were seen.
+	 */
+	boolean isObject() {
+		return objects != 0 && objects + nulls == count;
+	}
+
+	/**
+	 * True if only arrays (and nulls) were seen.
+	 */
+	boolean isArray() {
+		return arrays != 0 && arrays + nulls == count;
+	}
+
+	/**
+	 * Get the SPL type for the values.
+	 * @param typeList Definitions of the tuple types of nested objects are added to this list.
+	 * @param typeNames Names of the tuple types already defined.
+	 * @param parent Name of the enclosing type, used to make the type name of an object unique.
+	 * @param self Name of the member holding the values.
+	 * @param bounded True to use bounded types sized from the maximum lengths seen.
+	 */
+	String splType(List<String> typeList, Set<String> typeNames, String parent, String self, boolean bounded) {
+		if (count == nulls)
+			return "UNKNOWN_TYPE"; //$NON-NLS-1$
+		if (isObject()) {
+			String name = self + "Type"; //$NON-NLS-1$
+			if (!typeNames.add(name)) {
+				name = parent + self + "Type"; //$NON-NLS-1$
+				typeNames.add(name);
+			}
+			StringBuilder val = new StringBuilder();
+			for (Map.Entry<String, InferredType> e : members.entrySet()) {
+				if (val.length() != 0)
+					val.append(", "); //$NON-NLS-1$
+				val.append(e.getValue().splType(typeList, typeNames, parent + self, e.getKey(), bounded));
+				val.append(' ').append(e.getKey());
+			}
+			typeList.add("type " + name + " = " + val + ";"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return name;
+		}
+		if (isArray()) {
+			final String element = elements.splType(typeList, typeNames, parent + self, self, bounded);
+			return "list<" + element + ">" + (bounded ? "[" + maxArrayLength + "]" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		}
+		if (booleans + nulls == count)
+			return "boolean"; //$NON-NLS-1$
+		if (integers + nulls == count)
+			return "int64"; //$NON-NLS-1$
+		if (integers + floats + nulls == count)
+			return "float64"; //$NON-NLS-1$
+		// strings or mixed kinds of value
+		return bounded && strings == count - nulls ? "rstring[" + maxStringLength + "]" : "rstring"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Add a line of statistics for these values and for each nested member and element.
+	 * @param path JSON path of the values.
+	 * @param parentCount Number of objects containing the values, for a member.
+	 */
+	void statistics(List<String> lines, String path, long parentCount) {
+		StringBuilder sb = new StringBuilder("// "); //$NON-NLS-1$
+		sb.append(path).append(':');
+		if (parentCount > 0 && count < parentCount)
+			sb.append(String.format(" optional (present in %.1f%%)", 100.0 * count / parentCount)); //$NON-NLS-1$
+		append(sb, "null", nulls); //$NON-NLS-1$
+		append(sb, "boolean", booleans); //$NON-NLS-1$
+		if (integers != 0)
+			sb.append(" integer=").append(integers).append(" [").append(minInteger).append("..").append(maxInteger).append(']'); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		append(sb, "float", floats); //$NON-NLS-1$
+		if (strings != 0)
+			sb.append(" string=").append(strings).append(" maxLength=").append(maxStringLength); //$NON-NLS-1$ //$NON-NLS-2$
+		append(sb, "object", objects); //$NON-NLS-1$
+		if (arrays != 0)
+			sb.append(" array=").append(arrays).append(" maxLength=").append(maxArrayLength); //$NON-NLS-1$ //$NON-NLS-2$
+		lines.add(sb.toString());
+		for (Map.Entry<String, InferredType> e : members.entrySet())
+			e.getValue().statistics(lines, path + "." + e.getKey(), objects); //$NON-NLS-1$
+		if (elements != null)
+			elements.statistics(lines, path + "[*]", 0); //$NON-NLS-1$
+	}
+
+	private static void append(StringBuilder sb, String kind, long n) {
+		if (n != 0)
+			sb.append(' ').append(kind).append('=').append(n);
+	}
+
+	private static int utf8Length(String s) {
+		int len = s.length();
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) >= 0x80)
+				return s.getBytes(UTF8).length;
+		}
+		return len;
+	}
+}
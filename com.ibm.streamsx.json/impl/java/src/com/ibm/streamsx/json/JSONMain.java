@@ -6,148 +6,259 @@
 //
 package com.ibm.streamsx.json;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-import com.ibm.json.java.JSONArray;
-import com.ibm.json.java.JSONObject;
 import com.ibm.streamsx.json.Messages;
+import com.ibm.streamsx.json.converters.UTF8JSONReader;
 
 /**
  * This is a utility class
- * It requires a filename containing json object/array as input
- * It will print an SPL structure that closely matches the JSON structure.
+ * It requires a filename containing JSON documents as input
+ * It will print an SPL structure that closely matches the JSON structure
+ * of all the documents in the file, preceded by statistics of each field.
+ * <p>
+ * The file may contain a single JSON object or array, or any number of
+ * documents such as newline delimited JSON. Types are inferred from all the
+ * documents: numbers are widened to {@code float64} if any value has a fraction,
+ * fields missing from some objects are reported as optional and with
+ * {@code -bounded} strings and lists use bounded types sized from the
+ * longest value seen.
+ * <p>
+ * Files larger than a segment are split at line boundaries into segments
+ * that are scanned in parallel with fork/join. A document at the start of
+ * the file, such as a single pretty-printed object or array, is kept within
+ * the first segment, any other document in a large file must be on a single line.
+ * <pre>
+ * JSONMain [-bounded] [-threads n] file
+ * </pre>
  * @author rwagle
  *
  */
 public class JSONMain {
 
-  static String TAB = "  "; //$NON-NLS-1$
+  /** Nominal size of the segments of a file scanned by a single task. */
+  static int SEGMENT_SIZE = 16 * 1024 * 1024;
+
   public static void main(String[] args)  {
-    if(args.length!=1) {
+    boolean bounded = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    String fname = null;
+    for(int i = 0; i < args.length; i++) {
+      if(args[i].equals("-bounded")) //$NON-NLS-1$
+        bounded = true;
+      else if(args[i].equals("-threads") && i + 1 < args.length) //$NON-NLS-1$
+        threads = Math.max(1, Integer.parseInt(args[++i]));
+      else
+        fname = args[i];
+    }
+    if(fname == null) {
       System.err.println(Messages.getString("SPECIFY_FILE_CONTAINING_JSON")); //$NON-NLS-1$
       System.exit(1);
     }
     try {
-	    String jsonString = readFile(args[0]);
-	    
-		List<String> typeList = new ArrayList<String>();
-	    if(jsonString.startsWith("[")) { //$NON-NLS-1$
-	    	JSONArray jarr = JSONArray.parse(jsonString);
-	    	String ret = print(jarr, typeList, "", "Main") ; //$NON-NLS-1$ //$NON-NLS-2$
-	    	
-	    	for(String s : typeList) {
-	    		System.out.println(s+"\n"); //$NON-NLS-1$
-	    	}
-	    	System.out.println("type MainListType = " + ret + ";"); //$NON-NLS-1$ //$NON-NLS-2$
-	    }
-	    else {
-	    	JSONObject obj = JSONObject.parse(jsonString);
-	    	print(obj, typeList, "", "Main"); //$NON-NLS-1$ //$NON-NLS-2$
-	    	for(String s : typeList) {
-	    		System.out.println(s+"\n"); //$NON-NLS-1$
-	    	}
-	    }
+      InferredType root = infer(fname, threads);
+
+      List<String> lines = new ArrayList<String>();
+      lines.add("// documents: " + (root.count - root.invalid) + ", invalid: " + root.invalid); //$NON-NLS-1$ //$NON-NLS-2$
+      root.statistics(lines, "$", 0); //$NON-NLS-1$
+      for(String s : lines) {
+        System.out.println(s);
+      }
+      System.out.println();
+
+      List<String> typeList = new ArrayList<String>();
+      String ret = root.splType(typeList, new HashSet<String>(), "", "Main", bounded); //$NON-NLS-1$ //$NON-NLS-2$
+      for(String s : typeList) {
+        System.out.println(s+"\n"); //$NON-NLS-1$
+      }
+      if(root.isArray())
+        System.out.println("type MainListType = " + ret + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+      else if(!root.isObject())
+        System.out.println("type MainType = " + ret + ";"); //$NON-NLS-1$ //$NON-NLS-2$
     }catch(Exception e) {
-    	System.err.println(Messages.getString("UNABLE_TO_GENERATE_SPL_TYPES")); //$NON-NLS-1$
-    	e.printStackTrace();
-    	System.exit(1);
+      System.err.println(Messages.getString("UNABLE_TO_GENERATE_SPL_TYPES")); //$NON-NLS-1$
+      e.printStackTrace();
+      System.exit(1);
     }
   }
-  
-  static String readFile(String fname) throws IOException {
-    StringBuffer sb = new StringBuffer();
-    BufferedReader br = new BufferedReader(new FileReader(fname));
-    String line = null;
-    while((line = br.readLine()) != null) {
-      if(line.trim().isEmpty()) continue;
-      sb.append(line.trim());
-      break;//read one line
+
+  /**
+   * Infer the types of the JSON documents in a file.
+   * @param fname File containing the documents.
+   * @param threads Number of threads scanning the file.
+   * @return Statistics of the documents.
+   */
+  static InferredType infer(String fname, int threads) throws Exception {
+    try (RandomAccessFile file = new RandomAccessFile(fname, "r")) { //$NON-NLS-1$
+      final FileChannel channel = file.getChannel();
+      final long[] bounds = segments(channel);
+      final ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        return pool.invoke(new Scan(channel, bounds, 0, bounds.length - 1));
+      } finally {
+        pool.shutdown();
+      }
     }
-    br.close();
-    return sb.toString();
   }
-  
-  static void print(JSONObject obj, String tab) {
-    @SuppressWarnings("unchecked")
-	Set<Map.Entry<Object, Object>> entryset = obj.entrySet();
-    for(Map.Entry<Object, Object> keyset : entryset) {
-      print(keyset.getKey(), keyset.getValue(), tab + TAB);
+
+  /**
+   * Split a file into segments that start at the beginning of a line,
+   * the first segment includes all of the document at the start of the file.
+   * @return Offsets of the segments, followed by the file size.
+   */
+  static long[] segments(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    List<Long> bounds = new ArrayList<Long>();
+    bounds.add(0L);
+    final ByteBuffer bb = ByteBuffer.allocate(64 * 1024);
+    long next = SEGMENT_SIZE;
+    if(next < size)
+      next = Math.max(next, documentEnd(channel, bb));
+    while(next < size) {
+      // the segment ends after the first newline at or beyond its nominal end
+      long pos = next;
+      long end = size;
+      search:
+      while(pos < size) {
+        bb.clear();
+        final int n = channel.read(bb, pos);
+        for(int i = 0; i < n; i++) {
+          if(bb.get(i) == '\n') {
+            end = pos + i + 1;
+            break search;
+          }
+        }
+        pos += n;
+      }
+      if(end >= size)
+        break;
+      bounds.add(end);
+      next = end + SEGMENT_SIZE;
     }
-  }
-  
-  static String print(JSONObject obj, List<String> typeList, String parent, String self) {
-    @SuppressWarnings("unchecked")
-	Set<Map.Entry<Object, Object>> entryset = obj.entrySet();
-    String val = ""; //$NON-NLS-1$
-    for(Map.Entry<Object, Object> keyset : entryset) {
-      if(!val.equals("")) //$NON-NLS-1$
-        val += ", "; //$NON-NLS-1$
-      val += print(keyset.getValue(), typeList, parent+self, keyset.getKey().toString()) + " " + keyset.getKey(); //$NON-NLS-1$
+    bounds.add(size);
+    long[] ret = new long[bounds.size()];
+    for(int i = 0; i < ret.length; i++) {
+      ret[i] = bounds.get(i);
+      // each segment is scanned from a single array
+      if(i != 0 && ret[i] - ret[i - 1] > Integer.MAX_VALUE)
+        throw new IOException(MessageFormat.format(Messages.getString("SEGMENT_TOO_LARGE"), //$NON-NLS-1$
+            ret[i - 1], ret[i] - ret[i - 1], Integer.MAX_VALUE));
     }
-    typeList.add("type " + self + "Type = " + val + ";"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-    return self + "Type"; //$NON-NLS-1$
-    
+    return ret;
   }
-  static String print(Object value, List<String> typeList, String parent, String self) {
-    if(value == null) return "UNKNOWN_TYPE"; //$NON-NLS-1$
-    if(value.getClass().equals(JSONObject.class)) {
-      return print((JSONObject)value, typeList, parent, self);
-    }
-    else if(value.getClass().equals(JSONArray.class)) {
-      return print((JSONArray) value, typeList, parent, self);
-    }
-    else {
-      String clname = value.getClass().getSimpleName();
-      String val = ""; //$NON-NLS-1$
-      if(clname.equals("String"))  val = "rstring"; //$NON-NLS-1$ //$NON-NLS-2$
-      else if(clname.equals("Long"))  val = "int64"; //$NON-NLS-1$ //$NON-NLS-2$
-      else if(clname.equals("Float"))  val = "float32"; //$NON-NLS-1$ //$NON-NLS-2$
-      else if(clname.equals("Double"))  val = "float64"; //$NON-NLS-1$ //$NON-NLS-2$
-      else if(clname.equals("Boolean"))  val = "boolean"; //$NON-NLS-1$ //$NON-NLS-2$
-      else {
-        System.err.println(Messages.getString("UNSUPPORTED_TYPE") + clname + " : " + parent + self); //$NON-NLS-1$ //$NON-NLS-2$
-        System.exit(1);
+
+  /**
+   * Find the end of the object or array at the start of a file
+   * by tracking the nesting depth outside of strings.
+   * @return Offset after the document, 0 if the file does not start
+   * with an object or array, or the file size if the document is not closed.
+   */
+  static long documentEnd(FileChannel channel, ByteBuffer bb) throws IOException {
+    final long size = channel.size();
+    int depth = 0;
+    boolean inString = false;
+    boolean escape = false;
+    long pos = 0;
+    while(pos < size) {
+      bb.clear();
+      final int n = channel.read(bb, pos);
+      if(n < 0)
+        break;
+      for(int i = 0; i < n; i++) {
+        final byte c = bb.get(i);
+        if(depth == 0) {
+          if(c == '{' || c == '[')
+            depth = 1;
+          else if(c != ' ' && c != '\n' && c != '\r' && c != '\t')
+            return 0;
+        } else if(inString) {
+          if(escape)
+            escape = false;
+          else if(c == '\\')
+            escape = true;
+          else if(c == '"')
+            inString = false;
+        } else if(c == '"') {
+          inString = true;
+        } else if(c == '{' || c == '[') {
+          depth++;
+        } else if((c == '}' || c == ']') && --depth == 0) {
+          return pos + i + 1;
+        }
       }
-      return val;
+      pos += n;
     }
+    return depth == 0 ? 0 : size;
   }
-  
 
-  static void print(Object key, Object value, String tab) {
-    if(value == null) return;
-    if(value.getClass().equals(JSONObject.class)) {
-      System.out.println(tab + "Tuple: " + key); //$NON-NLS-1$
-      print((JSONObject) value, tab + TAB);
-    }
-    else if(value.getClass().equals(JSONArray.class)) {
-      System.out.println(tab + "List: " + key); //$NON-NLS-1$
-      print((JSONArray) value, tab + TAB);
-    }
-    else {
-      System.out.println(tab + value.getClass().getSimpleName() + " " + key ); //$NON-NLS-1$
+  /**
+   * Infers the types of the documents in a range of segments by
+   * splitting the range and merging the types of each half.
+   */
+  @SuppressWarnings("serial")
+  static final class Scan extends RecursiveTask<InferredType> {
+    private final FileChannel channel;
+    private final long[] bounds;
+    private final int lo;
+    private final int hi;
+
+    Scan(FileChannel channel, long[] bounds, int lo, int hi) {
+      this.channel = channel;
+      this.bounds = bounds;
+      this.lo = lo;
+      this.hi = hi;
     }
-  }
-  
-  static String print(JSONArray obj, List<String> typeList, String parent, String self) {
-    @SuppressWarnings("unchecked")
-	Iterator<Object> it = obj.iterator();
-    if(it.hasNext()) {
-      Object nobj = it.next();
-      return "list<" + print(nobj, typeList, parent+self, self) + ">"; //$NON-NLS-1$ //$NON-NLS-2$
+
+    @Override
+    protected InferredType compute() {
+      try {
+        if(hi - lo <= 1)
+          return scan(bounds[lo], bounds[hi]);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      final int mid = (lo + hi) >>> 1;
+      Scan left = new Scan(channel, bounds, lo, mid);
+      left.fork();
+      InferredType right = new Scan(channel, bounds, mid, hi).compute();
+      // merge in file order so members are listed in the order first seen
+      InferredType type = left.join();
+      type.merge(right);
+      return type;
     }
-    return "list<UNKNOWN_TYPE>"; //$NON-NLS-1$
-  }
 
-  static void print(JSONArray obj, String tab) {
-    @SuppressWarnings("unchecked")
-	Iterator<Object> it = obj.iterator();
-    if(it.hasNext()) {
-      Object nobj = it.next();
-      print("", nobj, tab + TAB); //$NON-NLS-1$
+    private InferredType scan(long start, long end) throws IOException {
+      final byte[] data = new byte[(int) (end - start)];
+      final ByteBuffer bb = ByteBuffer.wrap(data);
+      while(bb.hasRemaining()) {
+        if(channel.read(bb, start + bb.position()) < 0)
+          throw new EOFException();
+      }
+      final UTF8JSONReader reader = new UTF8JSONReader(data);
+      final InferredType type = new InferredType();
+      for(;;) {
+        final long count = type.count;
+        try {
+          if(!reader.hasNextDocument())
+            break;
+          type.add(reader);
+        } catch (IOException e) {
+          // continue with the next line, counting the document if its value was not started
+          if(type.count == count)
+            type.count++;
+          type.invalid++;
+          reader.skipLine();
+        }
+      }
+      return type;
     }
   }
-  
 }
@@ -6,20 +6,26 @@
 //
 package com.ibm.streamsx.json;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
-import com.ibm.json.java.JSONArray;
-import com.ibm.json.java.JSONObject;
 import com.ibm.streams.operator.AbstractOperator;
+import com.ibm.streams.operator.Attribute;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingInput;
-import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.TupleAttribute;
 import com.ibm.streams.operator.Type;
@@ -27,6 +33,8 @@ import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
 import com.ibm.streams.operator.logging.TraceLevel;
 import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
 import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPorts;
 import com.ibm.streams.operator.model.Libraries;
@@ -34,8 +42,14 @@ import com.ibm.streams.operator.model.OutputPortSet;
 import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.model.PrimitiveOperator;
-import com.ibm.streamsx.json.converters.JSONToTupleConverter;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.ValueFactory;
+import com.ibm.streamsx.json.converters.JSONReader;
+import com.ibm.streamsx.json.converters.StringJSONReader;
+import com.ibm.streamsx.json.converters.TupleDecoder;
 import com.ibm.streamsx.json.converters.TupleTypeVerifier;
+import com.ibm.streamsx.json.converters.UTF8JSONReader;
+import com.ibm.streamsx.json.converters.ValueDecoder;
 
 @InputPorts(@InputPortSet(cardinality=1, optional=false))
 @OutputPorts({
@@ -48,6 +62,13 @@ public class JSONToTuple extends AbstractOperator
 	private String jsonStringAttribute = null;
 	private static final String INPUT_JSON_ATTRIBUTE_PARAM="inputAttribute"; //$NON-NLS-1$
 	private static final String defaultJsonStringAttribute = "jsonString"; //$NON-NLS-1$
+	private static final String BATCH_FORMAT_PARAM = "batchFormat"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_MAPPING_PARAM = "attributeMapping"; //$NON-NLS-1$
+	static final String BATCH_NONE = "none"; //$NON-NLS-1$
+	static final String BATCH_NDJSON = "ndjson"; //$NON-NLS-1$
+	static final String BATCH_ARRAY = "array"; //$NON-NLS-1$
+	static final String BATCH_STREAM = "stream"; //$NON-NLS-1$
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
 	private Logger l = Logger.getLogger(JSONToTuple.class.getCanonicalName());
 	boolean ignoreParsingError = false;
 	private String jsonStringOutputAttribute = null;
@@ -56,14 +77,78 @@ public class JSONToTuple extends AbstractOperator
 	private boolean wasTargetSpecified = false;
 	private boolean hasOptionalOut = false;
 	private TupleAttribute<Tuple,String> inputJsonAttribute = null;
+
+	/*
+	 * Decoders compiled from the output schema in initialize.
+	 * tupleDecoder populates the output tuple or the tuple target attribute,
+	 * collectionDecoder populates a list or set target attribute.
+	 */
+	private TupleDecoder tupleDecoder;
+	private ValueDecoder collectionDecoder;
+	private int targetIndex = -1;
+
+	/*
+	 * rstring and blob input is parsed directly from its UTF-8 bytes,
+	 * ustring input from its Java String.
+	 */
+	private int inputIndex;
+	private MetaType inputType;
+	private int jsonOutputIndex = -1;
+	/*
+	 * Input attributes copied to the output tuple, resolved in initialize
+	 * by name and type.
+	 */
+	private int[] copyFrom;
+	private int[] copyTo;
+	private MetaType[] copyTypes;
+	private MetaType jsonOutputType;
+	private boolean jsonOutputSameType;
+	/*
+	 * Readers of each thread converting JSON, threads calling the operator
+	 * concurrently and worker threads each use their own readers.
+	 */
+	private ThreadLocal<Readers> readers;
+	private boolean strictNumbers = false;
+
+	private Map<String, String> attributePaths = new LinkedHashMap<>();
+	private String batchFormat = BATCH_NONE;
+	private boolean punctuateBatch = false;
+	private int maxDocumentSize = 16 * 1024 * 1024;
+	/** Documents split across input tuples, in stream batch format, used synchronized on itself. */
+	private ChunkedDocuments chunks;
+
+	/*
+	 * String attributes whose values are cached by the decoder.
+	 */
+	private Set<String> stringCacheAttributes = new HashSet<>();
+	private int stringCacheSize = 256;
+	private boolean autoStringCache = false;
+
+	/*
+	 * With multiple threads conversions are run by the worker pool.
+	 */
+	private int threads = 1;
+	private Integer queueDepth = null;
+	private OrderedWorkerPool workers;
+	private final Output directOutput = new Output();
+
+	/*
+	 * Custom metrics created in initialize.
+	 */
+	private Metric nParsed;
+	private Metric nFailed;
+	private Metric nSentToErrorPort;
+	private Metric nSkippedKeys;
+	private Metric bytesIn;
+	private ConversionTimeMetrics conversionTime;
 	
-	@Parameter(name=INPUT_JSON_ATTRIBUTE_PARAM,optional=true, description="The input stream attribute (not the name of the attribute) which contains the input JSON string. This attribute must be of `rstring` or `ustring` type. Default is the sole input attribute when the schema has one attribute otherwise `jsonString`. Replaces parameter `jsonStringAttribute`.")
+	@Parameter(name=INPUT_JSON_ATTRIBUTE_PARAM,optional=true, description="The input stream attribute (not the name of the attribute) which contains the input JSON string. This attribute must be of `rstring`, `ustring` or `blob` type. `rstring` and `blob` values are parsed directly as UTF-8 bytes. Default is the sole input attribute when the schema has one attribute otherwise `jsonString`. Replaces parameter `jsonStringAttribute`.")
 	public void setInputJson(TupleAttribute<Tuple,String> in) {
 		inputJsonAttribute = in;
 	}
 	
 	@Parameter(optional=true, description="Deprecated.  Use `"+INPUT_JSON_ATTRIBUTE_PARAM+"` instead. Name of the input stream attribute which contains the JSON string. " +
-			"This attribute must be of `rstring` or `ustring` type. Default is the sole input attribute when the schema has one attribute otherwise `jsonString`.")
+			"This attribute must be of `rstring`, `ustring` or `blob` type. Default is the sole input attribute when the schema has one attribute otherwise `jsonString`.")
 	public void setJsonStringAttribute(String value) {
 		this.jsonStringAttribute = value;
 	}
@@ -90,6 +175,100 @@ public class JSONToTuple extends AbstractOperator
 		ignoreParsingError = value;
 	}
 	
+	@Parameter(name=ATTRIBUTE_MAPPING_PARAM, optional=true, cardinality=-1, description=
+			"Mappings of output attributes to JSON paths, each of the form `attribute=path`, for example `city=$.address.city`. " +
+			"A path starts with `$` for the JSON document, followed by `.name` or `['name']` to select a member of an object " +
+			"and `[n]` to select an element of an array, for example `$.items[0].id`. " +
+			"Attributes are populated from values nested anywhere in the JSON in a single pass, " +
+			"without the need for intermediate tuple types. " +
+			"Attributes without a mapping are populated from the member of the JSON object with the same name as the attribute, " +
+			"unless the member is on the path of a mapping. " +
+			"When `targetAttribute` is a tuple the attributes are those of the target attribute. " +
+			"Ignored when `targetAttribute` is a list or set.")
+	public void setAttributeMapping(List<String> values) throws Exception {
+		for (String mapping : values) {
+			final int eq = mapping.indexOf('=');
+			if (eq <= 0)
+				throw new Exception(MessageFormat.format(Messages.getString("INVALID_PARAMETER_VALUE"), //$NON-NLS-1$
+						mapping, ATTRIBUTE_MAPPING_PARAM, "attribute=path")); //$NON-NLS-1$
+			attributePaths.put(mapping.substring(0, eq).trim(), mapping.substring(eq + 1).trim());
+		}
+	}
+	@Parameter(optional=true, cardinality=-1, description=
+			"Names of `rstring` or `ustring` output attributes whose values are cached, " +
+			"such as attributes holding one of a small set of values. " +
+			"A JSON string that is in an attribute's cache is set as a shared value without decoding or copying it, " +
+			"least recently used values are evicted once `stringCacheSize` values are cached. " +
+			"When `targetAttribute` is a tuple the attributes are those of the target attribute.")
+	public void setStringCacheAttributes(List<String> values) {
+		stringCacheAttributes.addAll(values);
+	}
+	@Parameter(optional=true, description=
+			"Maximum number of distinct values cached for each cached string attribute. Default is 256.")
+	public void setStringCacheSize(int value) {
+		stringCacheSize = value;
+	}
+	@Parameter(optional=true, description=
+			"Cache the values of all `rstring` and `ustring` output attributes not listed in `stringCacheAttributes`, " +
+			"caching stops for an attribute once most of the values read for it are not in its cache. " +
+			"Default is false.")
+	public void setAutoStringCache(boolean value) {
+		autoStringCache = value;
+	}
+	@Parameter(optional=true, description=
+			"Fail the conversion of a JSON number that cannot be converted to the type of its attribute without loss, " +
+			"such as a number with a fractional part for an integer attribute or a value outside the range of the attribute's type, " +
+			"instead of truncating it. The JSON is then handled as invalid JSON. When false an integer beyond the range of `int64`, " +
+			"or of `uint64` for a `uint64` attribute, is truncated to its low 64 bits. A JSON string read as an integer " +
+			"is invalid in either mode if it is outside the range of the attribute's type. Default is false.")
+	public void setStrictNumbers(boolean value) {
+		strictNumbers = value;
+	}
+	@Parameter(name=BATCH_FORMAT_PARAM, optional=true, description=
+			"Format of input JSON containing multiple documents, one output tuple is submitted for each document. " +
+			"`" + BATCH_NDJSON + "` - the input is a sequence of JSON values separated by newlines (newline delimited JSON). " +
+			"A line that cannot be parsed is handled as for invalid JSON, with the optional output port receiving " +
+			"a copy of the input tuple containing only the failing line, and conversion continues with the next line. " +
+			"`" + BATCH_ARRAY + "` - the input is a JSON array and each element is converted. " +
+			"`" + BATCH_STREAM + "` - the input tuples are consecutive chunks of a stream of JSON objects or arrays, " +
+			"a document may be split across any number of input tuples and a tuple is submitted when each document completes, " +
+			"with the attributes copied from the input tuple containing its end. " +
+			"Documents are limited to `maxDocumentSize` bytes, a document that exceeds it is handled as invalid JSON and skipped. " +
+			"The chunks are converted by the thread calling the operator, `threads` is ignored. " +
+			"`" + BATCH_NONE + "` - the input is a single JSON document. " +
+			"When the output JSON string attribute is set it contains the JSON of each document. " +
+			"Default is `" + BATCH_NONE + "`.")
+	public void setBatchFormat(String value) {
+		this.batchFormat = value;
+	}
+	@Parameter(optional=true, description=
+			"Submit a window punctuation after the tuples converted from each input tuple when `" + BATCH_FORMAT_PARAM + "` is set. " +
+			"Default is false.")
+	public void setPunctuateBatch(boolean value) {
+		punctuateBatch = value;
+	}
+	@Parameter(optional=true, description=
+			"Maximum size in bytes of a JSON document when `" + BATCH_FORMAT_PARAM + "` is `" + BATCH_STREAM + "`, " +
+			"bounding the memory used to hold a document split across input tuples. Default is 16777216 (16MB).")
+	public void setMaxDocumentSize(int value) {
+		maxDocumentSize = value;
+	}
+	
+	@Parameter(optional=true, description=
+			"Number of threads converting JSON. With more than one thread input tuples are converted in parallel " +
+			"by a pool of worker threads and output tuples are submitted in the order of the input tuples. " +
+			"Default is 1 where tuples are converted by the thread calling the operator.")
+	public void setThreads(int value) {
+		threads = value;
+	}
+	@Parameter(optional=true, description=
+			"Maximum number of input tuples being converted or waiting to be submitted when `threads` is greater than one. " +
+			"When the limit is reached processing of input tuples blocks until the oldest tuple has been submitted. " +
+			"Default is eight times the number of threads.")
+	public void setQueueDepth(int value) {
+		queueDepth = value;
+	}
+	
 	@ContextCheck
 	public static boolean checkOptionalPortSchema(OperatorContextChecker checker) {
 		if(checker.getOperatorContext().getNumberOfStreamingOutputs() == 2) {
@@ -111,6 +290,7 @@ public class JSONToTuple extends AbstractOperator
 		hasOptionalOut = op.getStreamingOutputs().size() > 1;
 
 		List<MetaType> types  = Arrays.asList(MetaType.RSTRING, MetaType.USTRING);
+		List<MetaType> inputTypes  = Arrays.asList(MetaType.RSTRING, MetaType.USTRING, MetaType.BLOB);
 		if (inputJsonAttribute == null && jsonStringAttribute == null) {
 			if (ssIp0.getAttributeCount() == 1) {
 				jsonStringAttribute = ssIp0.getAttribute(0).getName();
@@ -119,86 +299,560 @@ public class JSONToTuple extends AbstractOperator
 				jsonStringAttribute = defaultJsonStringAttribute;
 			}
 		}
-		if (inputJsonAttribute == null) {
-			TupleTypeVerifier.verifyAttributeType(ssIp0, jsonStringAttribute, types).getMetaType();
+		if (inputJsonAttribute != null) {
+			jsonStringAttribute = inputJsonAttribute.getAttribute().getName();
 		}
+		inputType = TupleTypeVerifier.verifyAttributeType(ssIp0, jsonStringAttribute, inputTypes).getMetaType();
+		inputIndex = ssIp0.getAttributeIndex(jsonStringAttribute);
 		if(jsonStringOutputAttribute!=null) {
-			TupleTypeVerifier.verifyAttributeType(ssOp0, jsonStringOutputAttribute, types).getMetaType();
+			jsonOutputType = TupleTypeVerifier.verifyAttributeType(ssOp0, jsonStringOutputAttribute, types).getMetaType();
+			jsonOutputIndex = ssOp0.getAttributeIndex(jsonStringOutputAttribute);
+			jsonOutputSameType = jsonOutputType == inputType;
+		}
+
+		if(!BATCH_NONE.equals(batchFormat) && !BATCH_NDJSON.equals(batchFormat) && !BATCH_ARRAY.equals(batchFormat)
+				&& !BATCH_STREAM.equals(batchFormat)) {
+			throw new Exception(MessageFormat.format(Messages.getString("INVALID_PARAMETER_VALUE"), //$NON-NLS-1$
+					batchFormat, BATCH_FORMAT_PARAM, Arrays.asList(BATCH_NONE, BATCH_NDJSON, BATCH_ARRAY, BATCH_STREAM)));
 		}
+		if(maxDocumentSize < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "maxDocumentSize", maxDocumentSize)); //$NON-NLS-1$ //$NON-NLS-2$
+		if(BATCH_STREAM.equals(batchFormat))
+			chunks = new ChunkedDocuments(maxDocumentSize);
+
+		if(threads < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "threads", threads)); //$NON-NLS-1$ //$NON-NLS-2$
+		if(queueDepth != null && queueDepth < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "queueDepth", queueDepth)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		if(stringCacheSize < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "stringCacheSize", stringCacheSize)); //$NON-NLS-1$ //$NON-NLS-2$
 
 		if(wasTargetSpecified) {
 			targetAttrType = TupleTypeVerifier.verifyAttributeType(ssOp0, targetAttribute, 
 	 					Arrays.asList(MetaType.TUPLE, MetaType.LIST, MetaType.BLIST, MetaType.SET, MetaType.BSET));
 			l.log(TraceLevel.INFO, "Will populate target field: " + targetAttribute); //$NON-NLS-1$
+			targetIndex = ssOp0.getAttributeIndex(targetAttribute);
+			if (targetAttrType.getMetaType() == MetaType.TUPLE)
+				tupleDecoder = newTupleDecoder(((TupleType)targetAttrType).getTupleSchema());
+			else
+				collectionDecoder = ValueDecoder.forType(targetAttribute, targetAttrType, null);
+		}
+		else {
+			tupleDecoder = newTupleDecoder(ssOp0);
 		}
+
+		compileCopyPlan(ssIp0, ssOp0);
+
+		OperatorMetrics metrics = op.getMetrics();
+		nParsed = metrics.createCustomMetric("nParsed", //$NON-NLS-1$
+				"Number of JSON documents converted to tuples.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		nFailed = metrics.createCustomMetric("nFailed", //$NON-NLS-1$
+				"Number of JSON documents that could not be converted.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		nSentToErrorPort = metrics.createCustomMetric("nSentToErrorPort", //$NON-NLS-1$
+				"Number of tuples submitted to the optional error output port.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		nSkippedKeys = metrics.createCustomMetric("nSkippedKeys", //$NON-NLS-1$
+				"Number of JSON object members skipped because the output schema has no matching attribute.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		bytesIn = metrics.createCustomMetric("bytesIn", //$NON-NLS-1$
+				"Number of bytes of JSON input, characters for ustring input.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		conversionTime = new ConversionTimeMetrics(metrics);
+
+		readers = new ThreadLocal<Readers>() {
+			@Override
+			protected Readers initialValue() {
+				return new Readers(strictNumbers);
+			}
+		};
+		if(threads > 1 && chunks == null)
+			workers = new OrderedWorkerPool(op.getThreadFactory(), threads, queueDepth == null ? threads * 8 : queueDepth);
 	}
 
-	public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception {
-		String jsonInput;
-		if (inputJsonAttribute != null) {
-			jsonInput = inputJsonAttribute.getValue(tuple);
+	/**
+	 * Resolve the input attributes copied to the output tuple, those
+	 * with the same name and type as an output attribute, as
+	 * {@code OutputTuple.assign} would for every tuple.
+	 */
+	private void compileCopyPlan(StreamSchema in, StreamSchema out) {
+		List<Attribute> copied = new ArrayList<>();
+		for (Attribute attr : out) {
+			Attribute inAttr = in.getAttribute(attr.getName());
+			if (inAttr != null && inAttr.getType().equals(attr.getType()))
+				copied.add(attr);
 		}
-		else {
-			jsonInput = tuple.getString(jsonStringAttribute);
+		copyFrom = new int[copied.size()];
+		copyTo = new int[copied.size()];
+		copyTypes = new MetaType[copied.size()];
+		for (int i = 0; i < copyTo.length; i++) {
+			final Attribute attr = copied.get(i);
+			copyFrom[i] = in.getAttributeIndex(attr.getName());
+			copyTo[i] = attr.getIndex();
+			copyTypes[i] = attr.getType().getMetaType();
 		}
-		StreamingOutput<OutputTuple> ops = getOutput(0);
-		OutputTuple op = ops.newTuple();
-		op.assign(tuple);//copy over any relevant attributes
+	}
 
+	/**
+	 * Create a tuple for the output port with the attributes copied from the input tuple.
+	 */
+	private OutputTuple newOutputTuple(Tuple tuple) {
+		final OutputTuple op = getOutput(0).newTuple();
+		for (int i = 0; i < copyTo.length; i++) {
+			final int from = copyFrom[i];
+			final int to = copyTo[i];
+			switch (copyTypes[i]) {
+			case BOOLEAN:
+				op.setBoolean(to, tuple.getBoolean(from));
+				break;
+			case INT8:
+			case UINT8:
+				op.setByte(to, tuple.getByte(from));
+				break;
+			case INT16:
+			case UINT16:
+				op.setShort(to, tuple.getShort(from));
+				break;
+			case INT32:
+			case UINT32:
+				op.setInt(to, tuple.getInt(from));
+				break;
+			case INT64:
+			case UINT64:
+				op.setLong(to, tuple.getLong(from));
+				break;
+			case FLOAT32:
+				op.setFloat(to, tuple.getFloat(from));
+				break;
+			case FLOAT64:
+				op.setDouble(to, tuple.getDouble(from));
+				break;
+			default:
+				op.setObject(to, tuple.getObject(from));
+				break;
+			}
+		}
+		return op;
+	}
+
+	/**
+	 * Create the decoder for the tuples populated from the JSON,
+	 * applying any attribute mappings.
+	 */
+	private TupleDecoder newTupleDecoder(StreamSchema schema) throws Exception {
+		for (String name : attributePaths.keySet())
+			TupleTypeVerifier.verifyAttributeType(schema, name, null);
+		for (String name : stringCacheAttributes)
+			TupleTypeVerifier.verifyAttributeType(schema, name, Arrays.asList(MetaType.RSTRING, MetaType.USTRING));
+		if (attributePaths.isEmpty() && stringCacheAttributes.isEmpty() && !autoStringCache)
+			return TupleDecoder.forSchema(schema);
+		return new TupleDecoder(schema, attributePaths, stringCacheAttributes, stringCacheSize, autoStringCache);
+	}
+
+	@Override
+	public void allPortsReady() throws Exception {
+		super.allPortsReady();
+		if(workers != null)
+			workers.start();
+	}
+
+	public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception {
 		if(l.isLoggable(TraceLevel.DEBUG))
-			l.log(TraceLevel.DEBUG, "Converting JSON: " + jsonInput); //$NON-NLS-1$
+			l.log(TraceLevel.DEBUG, "Converting JSON: " + getJsonString(tuple)); //$NON-NLS-1$
 
-		try {
-			if( targetAttribute != null &&  targetAttrType.getMetaType() != MetaType.TUPLE) {
-				//in this mode, the incoming json string is expected to be an array
-				JSONArray jsonArr = JSONArray.parse(jsonInput);
-				Object collectionObj = JSONToTupleConverter.jsonToAttribute(targetAttribute, targetAttrType, jsonArr, null);
-				if(collectionObj != null)
-					op.setObject(targetAttribute, collectionObj);
-			}
-			else {
-				JSONObject jsonObj = JSONObject.parse(jsonInput);
-				if(targetAttribute == null) {
-					final Map<String, Object> attributeMap = JSONToTupleConverter.jsonToAtributeMap(jsonObj, op.getStreamSchema());
-					if (!attributeMap.isEmpty())
-					    for (String name : attributeMap.keySet())
-					    	op.setObject(name, attributeMap.get(name));
-				}
-				else {
-					Tuple tup = JSONToTupleConverter.jsonToTuple(jsonObj, ((TupleType)targetAttrType).getTupleSchema());
-					if(tup!=null)
-						op.setTuple(targetAttribute, tup);
+		if(workers != null) {
+			workers.execute(new Conversion(tuple));
+			return;
+		}
+		final long start = System.nanoTime();
+		if(chunks != null) {
+			processChunk(tuple);
+			conversionTime.update(System.nanoTime() - start);
+			return;
+		}
+		convert(readers.get(), tuple, directOutput);
+		conversionTime.update(System.nanoTime() - start);
+	}
+
+	@Override
+	public void processPunctuation(StreamingInput<Tuple> stream, Punctuation mark) throws Exception {
+		// punctuation follows the tuples converted from earlier input
+		if(workers != null)
+			workers.drain();
+		if(chunks != null && mark == Punctuation.FINAL_MARKER) {
+			synchronized(chunks) {
+				if(chunks.isPending()) {
+					l.log(TraceLevel.ERROR, "Incomplete JSON document discarded at the end of the stream"); //$NON-NLS-1$
+					nFailed.increment();
+					chunks.reset();
 				}
 			}
+		}
+		super.processPunctuation(stream, mark);
+	}
+
+	@Override
+	public void shutdown() throws Exception {
+		if(workers != null)
+			workers.shutdown();
+		super.shutdown();
+	}
+
+	/**
+	 * Convert an input tuple, passing the resulting tuples to {@code out}.
+	 */
+	private void convert(Readers readers, Tuple tuple, Output out) throws Exception {
+		final JSONReader reader = resetReader(readers, tuple);
+		if(BATCH_NONE.equals(batchFormat))
+			processDocument(reader, tuple, out);
+		else
+			processBatch(reader, tuple, out);
+
+		if(reader.getSkippedMemberCount() != 0)
+			nSkippedKeys.incrementValue(reader.getSkippedMemberCount());
+	}
+
+	/**
+	 * Convert an input tuple containing a single JSON document.
+	 */
+	private void processDocument(JSONReader reader, Tuple tuple, Output out) throws Exception {
+		OutputTuple op = newOutputTuple(tuple);//copy over any relevant attributes
+
+		try {
+			decode(reader, op);
+			reader.endDocument();
+			nParsed.increment();
 			
-			
-			if(jsonStringOutputAttribute!= null) {
-				op.setString(jsonStringOutputAttribute, jsonInput);
+			if(jsonOutputIndex != -1) {
+				if(jsonOutputSameType)
+					op.setObject(jsonOutputIndex, tuple.getObject(inputIndex));
+				else
+					op.setString(jsonOutputIndex, getJsonString(tuple));
 			}
-			ops.submit(op);
+			out.submit(op);
 
 			
 		} catch(Exception e) {
-			l.log(TraceLevel.ERROR, "Error Converting String: " + jsonInput, e); //$NON-NLS-1$
+			l.log(TraceLevel.ERROR, "Error Converting String: " + getJsonString(tuple), e); //$NON-NLS-1$
+			nFailed.increment();
 			if(!hasOptionalOut && !ignoreParsingError)
 				throw e;
-			if(hasOptionalOut) {
-				StreamingOutput<OutputTuple> op1 = getOutput(1);
-				op1.submit(tuple);
+			if(hasOptionalOut)
+				out.submitError(tuple);
+		}
+	}
+
+	/**
+	 * Convert an input tuple containing multiple JSON documents, submitting
+	 * a tuple for each one. The same reader is used for all the documents.
+	 */
+	private void processBatch(JSONReader reader, Tuple tuple, Output out) throws Exception {
+		if(BATCH_ARRAY.equals(batchFormat)) {
+			try {
+				reader.beginArray();
+				while(reader.hasNextElement())
+					submitDocument(reader, tuple, out);
+				reader.endDocument();
+			} catch(Exception e) {
+				// the remainder of an array cannot be located after an error
+				l.log(TraceLevel.ERROR, "Error Converting String: " + getJsonString(tuple), e); //$NON-NLS-1$
+				nFailed.increment();
+				if(!hasOptionalOut && !ignoreParsingError)
+					throw e;
+				if(hasOptionalOut)
+					out.submitError(tuple);
+			}
+		}
+		else {
+			for(;;) {
+				int start = -1;
+				try {
+					if(!reader.hasNextDocument())
+						break;
+					start = reader.getPosition();
+					submitDocument(reader, tuple, out);
+				} catch(Exception e) {
+					// skip the remainder of the failing line and continue with the next
+					if(start == -1)
+						start = reader.getPosition();
+					reader.skipLine();
+					final Object line = getJsonText(tuple, inputType, start, reader.getPosition());
+					l.log(TraceLevel.ERROR, "Error Converting String: " + line, e); //$NON-NLS-1$
+					nFailed.increment();
+					if(!hasOptionalOut && !ignoreParsingError)
+						throw e;
+					if(hasOptionalOut) {
+						OutputTuple err = getOutput(1).newTuple();
+						err.assign(tuple);
+						err.setObject(inputIndex, line);
+						out.submitError(err);
+					}
+				}
+			}
+		}
+
+		if(punctuateBatch)
+			out.punctuate();
+	}
+
+	/**
+	 * Scan an input tuple holding the next chunk of a stream of documents,
+	 * submitting a tuple for each document completed by the chunk.
+	 */
+	private void processChunk(final Tuple tuple) throws Exception {
+		final byte[] data;
+		switch (inputType) {
+		case USTRING:
+			data = tuple.getString(inputIndex).getBytes(UTF8);
+			break;
+		case BLOB:
+			data = tuple.getBlob(inputIndex).getData();
+			break;
+		default:
+			data = ((RString) tuple.getObject(inputIndex)).getData();
+			break;
+		}
+		bytesIn.incrementValue(data.length);
+		// concurrent callers scan their chunks one at a time, in the order they hold the lock
+		synchronized(chunks) {
+			scanChunk(tuple, data);
+		}
+	}
+
+	/**
+	 * Scan a chunk, must be called synchronized on {@code chunks}.
+	 */
+	private void scanChunk(final Tuple tuple, byte[] data) throws Exception {
+		chunks.add(data, 0, data.length, new ChunkedDocuments.Handler() {
+			public void document(byte[] buf, int off, int len) throws Exception {
+				final UTF8JSONReader reader = readers.get().utf8;
+				reader.reset(buf, off, len);
+				try {
+					OutputTuple op = newOutputTuple(tuple);//copy over any relevant attributes
+					decode(reader, op);
+					reader.endDocument();
+					nParsed.increment();
+					if(jsonOutputIndex != -1)
+						op.setObject(jsonOutputIndex, textValue(jsonOutputType, buf, off, len));
+					directOutput.submit(op);
+				} catch(Exception e) {
+					failedDocument(tuple, e, buf, off, len);
+				}
+				if(reader.getSkippedMemberCount() != 0)
+					nSkippedKeys.incrementValue(reader.getSkippedMemberCount());
+			}
+			public void error(String detail, byte[] buf, int off, int len) throws Exception {
+				failedDocument(tuple, new IOException(detail), buf, off, len);
+			}
+		});
+		if(punctuateBatch)
+			directOutput.punctuate();
+	}
+
+	/**
+	 * Handle a document in a stream of documents that could not be converted,
+	 * the optional output port receives a copy of the input tuple containing the document.
+	 */
+	private void failedDocument(Tuple tuple, Exception e, byte[] buf, int off, int len) throws Exception {
+		final Object text = textValue(inputType, buf, off, len);
+		l.log(TraceLevel.ERROR, "Error Converting String: " + text, e); //$NON-NLS-1$
+		nFailed.increment();
+		if(!hasOptionalOut && !ignoreParsingError)
+			throw e;
+		if(hasOptionalOut) {
+			OutputTuple err = getOutput(1).newTuple();
+			err.assign(tuple);
+			err.setObject(inputIndex, text);
+			directOutput.submitError(err);
+		}
+	}
+
+	/**
+	 * Convert the next document from {@code reader} and submit it.
+	 */
+	private void submitDocument(JSONReader reader, Tuple tuple, Output out) throws Exception {
+		OutputTuple op = newOutputTuple(tuple);//copy over any relevant attributes
+		final int start = jsonOutputIndex == -1 ? 0 : reader.getPosition();
+		decode(reader, op);
+		nParsed.increment();
+		if(jsonOutputIndex != -1)
+			op.setObject(jsonOutputIndex, getJsonText(tuple, jsonOutputType, start, reader.getPosition()));
+		out.submit(op);
+	}
+
+	/**
+	 * Decode the next JSON value from {@code reader} into the output tuple.
+	 */
+	private void decode(JSONReader reader, OutputTuple op) throws Exception {
+		if(collectionDecoder != null) {
+			//in this mode, the incoming json string is expected to be an array
+			Object collectionObj = collectionDecoder.decode(reader);
+			if(collectionObj != null)
+				op.setObject(targetIndex, collectionObj);
+		}
+		else if(targetIndex != -1) {
+			Tuple tup = tupleDecoder.decodeTuple(reader);
+			op.setTuple(targetIndex, tup);
+		}
+		else {
+			tupleDecoder.decode(reader, op);
+		}
+	}
+
+	/**
+	 * Reset the reader for the type of the input attribute to read its JSON.
+	 * rstring and blob values are read as UTF-8 bytes without decoding them to a String.
+	 */
+	private JSONReader resetReader(Readers readers, Tuple tuple) {
+		final byte[] data;
+		switch (inputType) {
+		case USTRING:
+			final String json = tuple.getString(inputIndex);
+			bytesIn.incrementValue(json.length());
+			readers.string.reset(json);
+			return readers.string;
+		case BLOB:
+			data = tuple.getBlob(inputIndex).getData();
+			break;
+		default:
+			data = ((RString) tuple.getObject(inputIndex)).getData();
+			break;
+		}
+		bytesIn.incrementValue(data.length);
+		readers.utf8.reset(data, 0, data.length);
+		return readers.utf8;
+	}
+
+	/**
+	 * Readers used by a single thread.
+	 */
+	private static final class Readers {
+		final StringJSONReader string = new StringJSONReader();
+		final UTF8JSONReader utf8 = new UTF8JSONReader();
+
+		Readers(boolean strictNumbers) {
+			string.setStrictNumbers(strictNumbers);
+			utf8.setStrictNumbers(strictNumbers);
+		}
+	}
+
+	/**
+	 * Receives the tuples converted from an input tuple and submits them.
+	 */
+	private class Output {
+		void submit(OutputTuple tuple) throws Exception {
+			getOutput(0).submit(tuple);
+		}
+		void submitError(Tuple tuple) throws Exception {
+			getOutput(1).submit(tuple);
+			nSentToErrorPort.increment();
+		}
+		void punctuate() throws Exception {
+			getOutput(0).punctuate(Punctuation.WINDOW_MARKER);
+		}
+	}
+
+	/**
+	 * Conversion of an input tuple by a worker thread. The converted
+	 * tuples are held until the conversion is emitted in input order.
+	 */
+	private final class Conversion extends Output implements OrderedWorkerPool.Task {
+		private final Tuple tuple;
+		private final List<OutputTuple> tuples = new ArrayList<>(1);
+		private List<Tuple> errors;
+		private boolean punctuate;
+		private long nanos;
+
+		Conversion(Tuple tuple) {
+			this.tuple = tuple;
+		}
+
+		@Override
+		void submit(OutputTuple tuple) {
+			tuples.add(tuple);
+		}
+		@Override
+		void submitError(Tuple tuple) {
+			if (errors == null)
+				errors = new ArrayList<>(1);
+			errors.add(tuple);
+		}
+		@Override
+		void punctuate() {
+			punctuate = true;
+		}
+
+		public void run() throws Exception {
+			final long start = System.nanoTime();
+			convert(readers.get(), tuple, this);
+			nanos = System.nanoTime() - start;
+		}
+
+		public void emit() throws Exception {
+			for (OutputTuple t : tuples)
+				super.submit(t);
+			if (errors != null) {
+				for (Tuple t : errors)
+					super.submitError(t);
 			}
+			if (punctuate)
+				super.punctuate();
+			conversionTime.update(nanos);
 		}
 	}
 
+	/**
+	 * Get the JSON text between {@code start} and {@code end} in the input
+	 * as a value of {@code type}, trailing whitespace is removed.
+	 * Offsets are characters for ustring input and bytes otherwise.
+	 */
+	private Object getJsonText(Tuple tuple, MetaType type, int start, int end) {
+		if (inputType == MetaType.USTRING) {
+			String json = tuple.getString(inputIndex);
+			while (end > start && Character.isWhitespace(json.charAt(end - 1)))
+				end--;
+			json = json.substring(start, end);
+			return type == MetaType.RSTRING ? new RString(json) : json;
+		}
+		final byte[] data = inputType == MetaType.BLOB ? tuple.getBlob(inputIndex).getData()
+				: ((RString) tuple.getObject(inputIndex)).getData();
+		while (end > start && data[end - 1] <= ' ')
+			end--;
+		return textValue(type, data, start, end - start);
+	}
+
+	/**
+	 * Get the UTF-8 JSON text {@code data[off..off+len)} as a value of {@code type}.
+	 */
+	private static Object textValue(MetaType type, byte[] data, int off, int len) {
+		switch (type) {
+		case USTRING:
+			return new String(data, off, len, UTF8);
+		case BLOB:
+			return ValueFactory.newBlob(data, off, len);
+		default:
+			return new RString(Arrays.copyOfRange(data, off, off + len));
+		}
+	}
+
+	/**
+	 * Get the input JSON as a String, used for tracing and the output JSON string attribute.
+	 */
+	private String getJsonString(Tuple tuple) {
+		if (inputType == MetaType.BLOB)
+			return new String(tuple.getBlob(inputIndex).getData(), UTF8);
+		return tuple.getString(inputIndex);
+	}
+
 	static final String DESC = 
 			"This operator converts JSON strings into SPL Tuples. The tuple structure is expected to match the JSON schema." + //$NON-NLS-1$
 					" A subset of the attributes can be specified as well. " + //$NON-NLS-1$
 					" Only those attributes that are present in the Tuple schema and JSON input will be converted. All other attributes will be ignored." + //$NON-NLS-1$
 					" If an invalid JSON string is found in the input, the operator will fail. " + //$NON-NLS-1$
 					" This behavior can be overridden by specifying the optional output port or by specifying the \\\"ignoreParsingError\\\" parameter." + //$NON-NLS-1$
+					" An input attribute containing newline delimited JSON or a JSON array of documents can be converted into a tuple per document using the \\\"batchFormat\\\" parameter, " + //$NON-NLS-1$
+					" which also supports JSON documents split across multiple input tuples. " + //$NON-NLS-1$
 					" Attributes from the input stream that match those in the output stream will be automatically copied over. " + //$NON-NLS-1$
 					" However, if they also exist in the JSON input, their assigned value will be of that specified in the JSON." + //$NON-NLS-1$
 					" Null values in JSON arrays are ignored. Null values for all other attributes will result in default initializled output attributes. " + //$NON-NLS-1$
 					" Limitations:" + //$NON-NLS-1$
-					" BLOB, MAP and COMPLEX attribute types are not supported in the output tuple schema at this time and will be ignored." //$NON-NLS-1$
+					" BLOB and COMPLEX attribute types, and maps with keys that are not strings, numbers or booleans, are not supported in the output tuple schema at this time and will be ignored." //$NON-NLS-1$
 					;
 }
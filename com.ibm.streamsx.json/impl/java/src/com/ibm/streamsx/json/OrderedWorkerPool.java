@@ -0,0 +1,133 @@
+//
+// *******************************************************************************
+// * Copyright (C)2014, International Business Machines Corporation and *
+// * others. All Rights Reserved. *
+// *******************************************************************************
+//
+package com.ibm.streamsx.json;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs tasks on a fixed pool of worker threads while emitting their
+ * results in the order the tasks were executed.
+ * <p>
+ * Each task is run by a worker, then a single emitter thread calls
+ * {@link Task#emit()} for the tasks in execution order, waiting for
+ * a task to complete if it is ahead of those started after it.
+ * At most {@code queueDepth} tasks are outstanding, {@link #execute(Task)}
+ * blocks until the emitter has caught up, applying back pressure upstream.
+ * <p>
+ * If a task or its emit fails, no further tasks are emitted and the failure
+ * is thrown by the next call to {@link #execute(Task)} or {@link #drain()}.
+ */
+final class OrderedWorkerPool {
+
+	/**
+	 * Unit of work, {@link #run()} is called by a worker thread
+	 * and {@link #emit()} by the emitter thread.
+	 */
+	interface Task {
+		void run() throws Exception;
+		void emit() throws Exception;
+	}
+
+	private final ExecutorService workers;
+	private final Thread emitter;
+	private final BlockingQueue<Future<Task>> pending = new LinkedBlockingQueue<>();
+	/** A permit is held by each task from execute until its emit completes. */
+	private final Semaphore slots;
+	private final int queueDepth;
+	private volatile Throwable failure;
+
+	OrderedWorkerPool(ThreadFactory threadFactory, int threads, int queueDepth) {
+		this.queueDepth = queueDepth;
+		slots = new Semaphore(queueDepth);
+		workers = Executors.newFixedThreadPool(threads, threadFactory);
+		emitter = threadFactory.newThread(new Runnable() {
+			public void run() {
+				emitLoop();
+			}
+		});
+	}
+
+	void start() {
+		emitter.start();
+	}
+
+	/**
+	 * Execute a task, blocking while {@code queueDepth} tasks are outstanding.
+	 */
+	void execute(final Task task) throws Exception {
+		slots.acquire();
+		if (failure != null) {
+			slots.release();
+			checkFailure();
+		}
+		pending.add(workers.submit(new Callable<Task>() {
+			public Task call() throws Exception {
+				task.run();
+				return task;
+			}
+		}));
+	}
+
+	/**
+	 * Wait until all the tasks executed so far have been emitted.
+	 */
+	void drain() throws Exception {
+		slots.acquire(queueDepth);
+		slots.release(queueDepth);
+		checkFailure();
+	}
+
+	void shutdown() {
+		workers.shutdownNow();
+		emitter.interrupt();
+	}
+
+	private void checkFailure() throws Exception {
+		final Throwable t = failure;
+		if (t == null)
+			return;
+		if (t instanceof Exception)
+			throw (Exception) t;
+		throw new Exception(t);
+	}
+
+	private void emitLoop() {
+		try {
+			for (;;) {
+				final Future<Task> result = pending.take();
+				try {
+					final Task task = result.get();
+					if (failure == null)
+						task.emit();
+				} catch (ExecutionException e) {
+					fail(e.getCause());
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Exception e) {
+					fail(e);
+				} finally {
+					slots.release();
+				}
+			}
+		} catch (InterruptedException e) {
+			// shutdown
+		}
+	}
+
+	private void fail(Throwable t) {
+		if (failure == null)
+			failure = t;
+	}
+}
@@ -6,13 +6,16 @@
 //
 package com.ibm.streamsx.json;
 
+import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.ibm.streams.operator.AbstractOperator;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingInput;
 import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Tuple;
@@ -20,6 +23,9 @@ import com.ibm.streams.operator.TupleAttribute;
 import com.ibm.streams.operator.Type;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.logging.TraceLevel;
+import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
 import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPorts;
 import com.ibm.streams.operator.model.Libraries;
@@ -27,7 +33,10 @@ import com.ibm.streams.operator.model.OutputPortSet;
 import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.model.PrimitiveOperator;
-import com.ibm.streamsx.json.converters.TupleToJSONConverter;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.ValueFactory;
+import com.ibm.streamsx.json.converters.JSONWriter;
+import com.ibm.streamsx.json.converters.TupleEncoder;
 import com.ibm.streamsx.json.converters.TupleTypeVerifier;
 
 @InputPorts(@InputPortSet(cardinality=1, optional=false))
@@ -39,10 +48,51 @@ public class TupleToJSON extends AbstractOperator {
 	private String jsonStringAttribute = null;
 	private static final String defaultJsonStringAttribute = "jsonString"; //$NON-NLS-1$
 	private static final String ROOT_ATTRIBUTE_PARAM = "inputAttribute"; //$NON-NLS-1$
+	private static final String BATCH_FORMAT_PARAM = "batchFormat"; //$NON-NLS-1$
 	TupleAttribute<Tuple,?> rootAttr = null;
 	private String rootAttribute = null;
 	private Type rootAttributeType =null;
+
+	/*
+	 * Encoder built in initialize for the schema of the input tuple or of the
+	 * tuple root attribute, the JSON is written into a reusable UTF-8 buffer
+	 * held by each thread calling the operator.
+	 */
+	private TupleEncoder encoder;
+	private int rootIndex = -1;
+	private int jsonIndex;
+	private final ThreadLocal<JSONWriter> writers = new ThreadLocal<JSONWriter>() {
+		@Override
+		protected JSONWriter initialValue() {
+			return new JSONWriter();
+		}
+	};
+
+	/*
+	 * Custom metrics created in initialize.
+	 */
+	private Metric nConverted;
+	private Metric bytesOut;
+	private ConversionTimeMetrics conversionTime;
 	
+	/*
+	 * Batch mode, the JSON of each tuple is appended to batchWriter
+	 * which is submitted as a single value when a trigger is reached.
+	 * Batches are written by process and the batch timeout task
+	 * synchronized on the operator.
+	 */
+	private String batchFormat = JSONToTuple.BATCH_NONE;
+	private Integer batchSize = null;
+	private Integer batchBytes = null;
+	private Double batchTimeout = null;
+	private boolean batchArray;
+	private final JSONWriter batchWriter = new JSONWriter();
+	private int batchCount;
+	/** Incremented for each batch submitted, identifies the batch a timeout was scheduled for. */
+	private long batchNumber;
+	private MetaType jsonType;
+	private Metric nBatches;
+
 	private static Logger l = Logger.getLogger(TupleToJSON.class.getCanonicalName());
 
 	@Parameter(name=ROOT_ATTRIBUTE_PARAM,
@@ -53,7 +103,10 @@ public class TupleToJSON extends AbstractOperator {
 	}
 	
 	@Parameter(optional=true, 
-			description="Name of the output stream attribute where the JSON string will be populated. Default is `jsonString`.")
+			description="Name of the output stream attribute where the JSON string will be populated. " +
+			"This attribute must be of `rstring`, `ustring` or `blob` type. " +
+			"`rstring` and `blob` values are set from the UTF-8 encoded JSON in a single copy without creating a String. " +
+			"Default is `jsonString`.")
 	public void setJsonStringAttribute(String value) {
 		this.jsonStringAttribute = value;
 	}
@@ -63,6 +116,35 @@ public class TupleToJSON extends AbstractOperator {
 		this.rootAttribute = value;
 	}
 
+	@Parameter(name=BATCH_FORMAT_PARAM, optional=true, description=
+			"Submit the JSON of multiple input tuples as a single output value. " +
+			"`" + JSONToTuple.BATCH_ARRAY + "` - the value is a JSON array of the JSON objects. " +
+			"`" + JSONToTuple.BATCH_NDJSON + "` - the value is newline delimited JSON, each JSON object followed by a newline. " +
+			"`" + JSONToTuple.BATCH_NONE + "` - a tuple is submitted for each input tuple. " +
+			"A batch is submitted when it reaches `batchSize` tuples, `batchBytes` bytes or is `batchTimeout` seconds old, " +
+			"and before any punctuation is forwarded. Only the JSON string attribute is set in the output tuples for a batch. " +
+			"Default is `" + JSONToTuple.BATCH_NONE + "`.")
+	public void setBatchFormat(String value) {
+		batchFormat = value;
+	}
+	@Parameter(optional=true, description=
+			"Maximum number of tuples in a batch when `" + BATCH_FORMAT_PARAM + "` is set. Default is no limit.")
+	public void setBatchSize(int value) {
+		batchSize = value;
+	}
+	@Parameter(optional=true, description=
+			"Submit a batch once its UTF-8 encoded JSON reaches this number of bytes when `" + BATCH_FORMAT_PARAM + "` is set. " +
+			"Default is no limit.")
+	public void setBatchBytes(int value) {
+		batchBytes = value;
+	}
+	@Parameter(optional=true, description=
+			"Submit a batch this number of seconds after its first tuple was converted when `" + BATCH_FORMAT_PARAM + "` is set. " +
+			"Default is no timeout.")
+	public void setBatchTimeout(double value) {
+		batchTimeout = value;
+	}
+
 	@Override
 	public void initialize(OperatorContext op) throws Exception {
 		super.initialize(op);
@@ -79,8 +161,21 @@ public class TupleToJSON extends AbstractOperator {
 				jsonStringAttribute = ssop.getAttribute(0).getName();
 			}
 		}
-		TupleTypeVerifier.verifyAttributeType(ssop, jsonStringAttribute, 
-				Arrays.asList(MetaType.RSTRING, MetaType.USTRING));
+		jsonType = TupleTypeVerifier.verifyAttributeType(ssop, jsonStringAttribute, 
+				Arrays.asList(MetaType.RSTRING, MetaType.USTRING, MetaType.BLOB)).getMetaType();
+		jsonIndex = ssop.getAttributeIndex(jsonStringAttribute);
+
+		if(!JSONToTuple.BATCH_NONE.equals(batchFormat) && !JSONToTuple.BATCH_NDJSON.equals(batchFormat) && !JSONToTuple.BATCH_ARRAY.equals(batchFormat)) {
+			throw new Exception(MessageFormat.format(Messages.getString("INVALID_PARAMETER_VALUE"), //$NON-NLS-1$
+					batchFormat, BATCH_FORMAT_PARAM, Arrays.asList(JSONToTuple.BATCH_NONE, JSONToTuple.BATCH_NDJSON, JSONToTuple.BATCH_ARRAY)));
+		}
+		batchArray = JSONToTuple.BATCH_ARRAY.equals(batchFormat);
+		if(batchSize != null && batchSize < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "batchSize", batchSize)); //$NON-NLS-1$ //$NON-NLS-2$
+		if(batchBytes != null && batchBytes < 1)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "batchBytes", batchBytes)); //$NON-NLS-1$ //$NON-NLS-2$
+		if(batchTimeout != null && batchTimeout <= 0)
+			throw new Exception(MessageFormat.format(Messages.getString("PARAMETER_MUST_BE_POSITIVE"), "batchTimeout", batchTimeout)); //$NON-NLS-1$ //$NON-NLS-2$
 
 		StreamSchema ssip = getInput(0).getStreamSchema();
 	
@@ -92,30 +187,158 @@ public class TupleToJSON extends AbstractOperator {
 			rootAttributeType = TupleTypeVerifier.verifyAttributeType(ssip, rootAttribute, 
 					Arrays.asList(MetaType.TUPLE, MetaType.LIST, MetaType.BLIST, MetaType.SET, MetaType.BSET));
 			l.log(TraceLevel.INFO, "Will use source attribute: " + rootAttribute); //$NON-NLS-1$
+			rootIndex = ssip.getAttributeIndex(rootAttribute);
 		}
+		if(rootAttributeType != null && rootAttributeType.getMetaType() == MetaType.TUPLE)
+			encoder = TupleEncoder.forSchema(((TupleType) rootAttributeType).getTupleSchema());
+		else
+			encoder = TupleEncoder.forSchema(ssip);
+
+		OperatorMetrics metrics = op.getMetrics();
+		nConverted = metrics.createCustomMetric("nConverted", //$NON-NLS-1$
+				"Number of tuples converted to JSON.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		bytesOut = metrics.createCustomMetric("bytesOut", //$NON-NLS-1$
+				"Number of bytes of UTF-8 encoded JSON produced.", Metric.Kind.COUNTER); //$NON-NLS-1$
+		conversionTime = new ConversionTimeMetrics(metrics);
+		if(!JSONToTuple.BATCH_NONE.equals(batchFormat))
+			nBatches = metrics.createCustomMetric("nBatches", //$NON-NLS-1$
+					"Number of batches of JSON submitted.", Metric.Kind.COUNTER); //$NON-NLS-1$
 	}
 
 	public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception 	{
+		if(!JSONToTuple.BATCH_NONE.equals(batchFormat)) {
+			addToBatch(tuple);
+			return;
+		}
 		StreamingOutput<OutputTuple> ops = getOutput(0);
-		final String jsonData;
-		if(rootAttribute == null) 
-			jsonData = TupleToJSONConverter.convertTuple(tuple);
+		final long start = System.nanoTime();
+		final JSONWriter writer = writers.get();
+		writer.reset();
+		encode(tuple, writer);
+		OutputTuple op = ops.newTuple();
+		op.assign(tuple);//copy over all relevant attributes form the source tuple
+		setJson(op, writer);
+		nConverted.increment();
+		bytesOut.incrementValue(writer.size());
+		conversionTime.update(System.nanoTime() - start);
+
+		ops.submit(op);
+	}
+
+	@Override
+	public void processPunctuation(StreamingInput<Tuple> stream, Punctuation mark) throws Exception {
+		// tuples batched before the punctuation are submitted ahead of it
+		if(!JSONToTuple.BATCH_NONE.equals(batchFormat)) {
+			synchronized(this) {
+				submitBatch();
+			}
+		}
+		super.processPunctuation(stream, mark);
+	}
+
+	/**
+	 * Write the JSON for an input tuple.
+	 */
+	private void encode(Tuple tuple, JSONWriter writer) throws Exception {
+		if(rootIndex == -1) 
+			encoder.encode(tuple, writer);
 		else {
 			if(rootAttributeType.getMetaType() == MetaType.TUPLE)
-				jsonData = TupleToJSONConverter.convertTuple(tuple.getTuple(rootAttribute));
+				encoder.encode(tuple.getTuple(rootIndex), writer);
 			else 
-				jsonData = TupleToJSONConverter.convertArray(tuple, rootAttribute);
+				encoder.encodeAttribute(tuple, rootIndex, writer);
 		}
-		OutputTuple op = ops.newTuple();
-		op.assign(tuple);//copy over all relevant attributes form the source tuple
-        op.setString(jsonStringAttribute, jsonData);
+	}
+
+	/**
+	 * Set the JSON string attribute to the JSON held by {@code writer}.
+	 */
+	private void setJson(OutputTuple op, JSONWriter writer) {
+		switch(jsonType) {
+		case RSTRING:
+			op.setObject(jsonIndex, new RString(writer.toByteArray()));
+			break;
+		case BLOB:
+			op.setBlob(jsonIndex, ValueFactory.newBlob(writer.getBuffer(), 0, writer.size()));
+			break;
+		default:
+			op.setString(jsonIndex, writer.toString());
+			break;
+		}
+	}
 
+	/**
+	 * Append the JSON of a tuple to the current batch,
+	 * submitting the batch if it is full.
+	 */
+	private synchronized void addToBatch(Tuple tuple) throws Exception {
+		final long start = System.nanoTime();
+		final int mark = batchWriter.size();
+		if(batchArray)
+			batchWriter.write(batchCount == 0 ? '[' : ',');
+		try {
+			encode(tuple, batchWriter);
+		} catch (Exception e) {
+			// discard the partial JSON so the batch remains valid
+			batchWriter.truncate(mark);
+			throw e;
+		}
+		if(!batchArray)
+			batchWriter.write('\n');
+		if(batchCount == 0 && batchTimeout != null)
+			scheduleBatchTimeout();
+		batchCount++;
+		nConverted.increment();
+		conversionTime.update(System.nanoTime() - start);
+
+		if((batchSize != null && batchCount >= batchSize) || (batchBytes != null && batchWriter.size() >= batchBytes))
+			submitBatch();
+	}
+
+	/**
+	 * Submit the current batch if it is not empty, must be called synchronized on the operator.
+	 */
+	private void submitBatch() throws Exception {
+		if(batchCount == 0)
+			return;
+		if(batchArray)
+			batchWriter.write(']');
+		StreamingOutput<OutputTuple> ops = getOutput(0);
+		OutputTuple op = ops.newTuple();
+		setJson(op, batchWriter);
+		bytesOut.incrementValue(batchWriter.size());
+		nBatches.increment();
+		batchWriter.reset();
+		batchCount = 0;
+		batchNumber++;
 		ops.submit(op);
 	}
 
+	/**
+	 * Submit the batch that has just been started after the batch timeout,
+	 * unless it has already been submitted.
+	 */
+	private void scheduleBatchTimeout() {
+		final long batch = batchNumber;
+		getOperatorContext().getScheduledExecutorService().schedule(new Runnable() {
+			public void run() {
+				synchronized(TupleToJSON.this) {
+					if(batch != batchNumber)
+						return;
+					try {
+						submitBatch();
+					} catch (Exception e) {
+						l.log(TraceLevel.ERROR, "Error submitting batch", e); //$NON-NLS-1$
+					}
+				}
+			}
+		}, (long) (batchTimeout * 1000.0), TimeUnit.MILLISECONDS);
+	}
+
 	static final String DESC = 
 			"This operator converts incoming tuples to JSON String." + //$NON-NLS-1$
 			" Note that any matching attributes from the input stream will be copied over to the output." + //$NON-NLS-1$
 			" If an attribute, with the same name as the JSON string output attribute exists in the input stream, " + //$NON-NLS-1$
-			"it will be overwritten by the JSON String that is generated." ; //$NON-NLS-1$
+			"it will be overwritten by the JSON String that is generated." + //$NON-NLS-1$
+			" The JSON of multiple tuples can be submitted as a single JSON array or newline delimited JSON using the \\\"batchFormat\\\" parameter." ; //$NON-NLS-1$
 }
@@ -0,0 +1,351 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.MessageFormat;
+
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * Pull reader over the tokens of a single JSON text.
+ * <p>
+ * Values are read in document order without building an intermediate
+ * JSON object tree. Scalar reads apply the same conversions as
+ * {@link JSONToTupleConverter#jsonToAttribute(String, com.ibm.streams.operator.Type, Object, com.ibm.streams.operator.Type)},
+ * for example a JSON string containing digits can be read with {@link #nextLong()}.
+ * <p>
+ * Objects are read with:
+ * <pre>
+ * reader.beginObject();
+ * while (reader.hasNextMember()) {
+ *     String key = reader.nextName();
+ *     ... read or skip the value ...
+ * }
+ * </pre>
+ * and arrays with {@link #beginArray()} and {@link #hasNextElement()}.
+ * <p>
+ * Numbers are converted directly from the input without creating a String.
+ * By default they are narrowed to the type read as by a Java cast, in strict
+ * mode (see {@link #setStrictNumbers(boolean)}) a number that cannot be
+ * converted without loss fails.
+ * <p>
+ * A reader is not thread safe, and is reused for multiple JSON texts by
+ * resetting it with new input.
+ */
+public abstract class JSONReader {
+
+	/** No more values in the input. */
+	public static final int END = 0;
+	/** Next value is a JSON object. */
+	public static final int OBJECT = 1;
+	/** Next value is a JSON array. */
+	public static final int ARRAY = 2;
+	/** Next value is a JSON string. */
+	public static final int STRING = 3;
+	/** Next value is a JSON number. */
+	public static final int NUMBER = 4;
+	/** Next value is {@code true} or {@code false}. */
+	public static final int BOOLEAN = 5;
+	/** Next value is {@code null}. */
+	public static final int NULL = 6;
+
+	/**
+	 * True when the next member or element is the first one of the
+	 * enclosing object or array, and so is not preceded by a comma.
+	 */
+	boolean first;
+
+	/**
+	 * Number of object members skipped by decoders since the reader
+	 * was reset, because the member has no matching attribute.
+	 */
+	int skippedMembers;
+
+	/** True to fail rather than truncate numbers that do not fit the type read. */
+	private boolean strictNumbers;
+
+	/**
+	 * Return the kind of the next value without consuming it.
+	 * @return One of the value kinds defined by this class.
+	 * @throws IOException If the next character cannot start a JSON value.
+	 */
+	public abstract int peek() throws IOException;
+
+	/** Consume the start of an object. */
+	public abstract void beginObject() throws IOException;
+
+	/**
+	 * Move to the next member of the current object.
+	 * @return True if there is another member, false if the end of the object was consumed.
+	 */
+	public abstract boolean hasNextMember() throws IOException;
+
+	/** Consume the start of an array. */
+	public abstract void beginArray() throws IOException;
+
+	/**
+	 * Move to the next element of the current array.
+	 * @return True if there is another element, false if the end of the array was consumed.
+	 */
+	public abstract boolean hasNextElement() throws IOException;
+
+	/**
+	 * Read the name of the next member, and the colon that follows it.
+	 */
+	public abstract String nextName() throws IOException;
+
+	/**
+	 * Read the name of the next member and look it up in {@code names}
+	 * without creating a String for the name.
+	 * @return Value of the name in {@code names} or -1 if the name is not present.
+	 */
+	abstract int nextName(NameTable names) throws IOException;
+
+	/**
+	 * Read the next value as a String. Numbers and booleans are returned in
+	 * their Java String form, objects and arrays as their JSON text.
+	 * @return The value, or null if the value is {@code null}.
+	 */
+	public abstract String nextString() throws IOException;
+
+	/**
+	 * Read the next value as an {@code rstring}.
+	 * @see #nextString()
+	 */
+	public RString nextRString() throws IOException {
+		String s = nextString();
+		return s == null ? null : new RString(s);
+	}
+
+	/**
+	 * Read the next value as a String or {@code RString}, depending on the
+	 * values held by {@code cache}. A JSON string is looked up in the cache
+	 * using the characters in the reader's buffer.
+	 * @return The value, or null if the value is {@code null}.
+	 */
+	Object nextString(StringCache cache) throws IOException {
+		return cache.isRString() ? nextRString() : nextString();
+	}
+
+	/**
+	 * Read the next value as a long. Numbers with a fractional part are
+	 * truncated and strings are parsed, an empty string is zero.
+	 * In strict mode a number with a fractional part fails.
+	 * An integer outside the range of a long fails.
+	 */
+	public long nextLong() throws IOException {
+		return nextLong(MetaType.INT64);
+	}
+
+	/**
+	 * Read the next value as a long for the SPL integral type {@code type},
+	 * as {@link #nextLong()} except that for {@code uint64} values up to 2^64-1
+	 * are read and held in a long with the same bits, and in strict mode a
+	 * negative value fails.
+	 */
+	abstract long nextLong(MetaType type) throws IOException;
+
+	/**
+	 * Read the next value as an integer of the SPL integral type {@code type}.
+	 * The value is returned as a long to be cast to the Java type of the type,
+	 * unsigned values are held in the signed Java type of the same size.
+	 * A number outside the range of the type is truncated by the cast, or fails
+	 * in strict mode. A string outside the range fails in either mode.
+	 */
+	long nextInteger(MetaType type) throws IOException {
+		final long value = nextLong(type);
+		if (strictNumbers && !inRange(value, type))
+			throw numberError(Long.toString(value), type);
+		return value;
+	}
+
+	/**
+	 * Read the next value as a float.
+	 * In strict mode a finite value beyond the range of a float fails.
+	 */
+	float nextFloat() throws IOException {
+		final double value = nextDouble();
+		final float f = (float) value;
+		if (strictNumbers && Float.isInfinite(f) && !Double.isInfinite(value))
+			throw numberError(Double.toString(value), MetaType.FLOAT32);
+		return f;
+	}
+
+	/**
+	 * Read the next value as a double. Strings are parsed, an empty string is zero.
+	 */
+	public abstract double nextDouble() throws IOException;
+
+	/**
+	 * Read the next value as a BigDecimal. Strings are parsed, an empty string is zero.
+	 */
+	public abstract BigDecimal nextBigDecimal() throws IOException;
+
+	/**
+	 * Read the next value as a boolean. Strings are parsed using {@link Boolean#parseBoolean(String)}.
+	 */
+	public abstract boolean nextBoolean() throws IOException;
+
+	/** Consume a {@code null} value. */
+	public abstract void nextNull() throws IOException;
+
+	/**
+	 * Skip the next value, including all nested values of an object or array.
+	 * Objects and arrays are skipped by scanning for their closing bracket,
+	 * only the nesting of brackets and the termination of strings is validated.
+	 */
+	public abstract void skipValue() throws IOException;
+
+	/**
+	 * Skip the remaining members or elements of the current object or array,
+	 * including its closing bracket.
+	 */
+	abstract void skipToEnd() throws IOException;
+
+	/**
+	 * Verify that only whitespace remains after the value that was read.
+	 */
+	public abstract void endDocument() throws IOException;
+
+	/**
+	 * Move to the start of the next JSON text when the input holds
+	 * a sequence of texts, such as newline delimited JSON.
+	 * @return True if there is another value, false if only whitespace remains.
+	 */
+	public boolean hasNextDocument() throws IOException {
+		return peek() != END;
+	}
+
+	/**
+	 * Skip all input up to and including the next line feed, used to
+	 * resume reading newline delimited JSON after a line that cannot be parsed.
+	 */
+	public abstract void skipLine();
+
+	/**
+	 * Get the number of JSON object members that were skipped by a {@link TupleDecoder}
+	 * since this reader was reset, because the schema has no attribute with their name.
+	 */
+	public int getSkippedMemberCount() {
+		return skippedMembers;
+	}
+
+	/**
+	 * Offset of the reader within the current input.
+	 */
+	public abstract int getPosition();
+
+	/**
+	 * Set whether numbers are converted strictly. In strict mode reading a
+	 * number with a fractional part as an integer, an integer outside the range of
+	 * the SPL type read or a number beyond the range of {@code float32} as {@code float32}
+	 * fails, rather than truncating the value. A string outside the range of an
+	 * integral type fails in either mode. Default is false.
+	 */
+	public void setStrictNumbers(boolean strict) {
+		strictNumbers = strict;
+	}
+
+	/**
+	 * True if numbers are converted strictly.
+	 * @see #setStrictNumbers(boolean)
+	 */
+	public boolean isStrictNumbers() {
+		return strictNumbers;
+	}
+
+	/**
+	 * Value of a number read as a long for {@code type}, see {@link #nextLong(MetaType)}.
+	 * A number with a fractional part is truncated, and an integer beyond the range
+	 * of a long, or of {@code uint64}, is truncated to its low 64 bits as by
+	 * {@link BigInteger#longValue()}. Both are rejected in strict mode.
+	 */
+	long longValue(NumberParser number, MetaType type) throws IOException {
+		final boolean unsigned = type == MetaType.UINT64;
+		if (number.isIntegral()) {
+			if (!number.isLong(unsigned)) {
+				if (strictNumbers)
+					throw numberError(number.text(), type);
+				return new BigInteger(number.text()).longValue();
+			}
+			final long value = number.longValue();
+			if (unsigned && strictNumbers && number.isNegative() && value != 0)
+				throw numberError(number.text(), type);
+			return value;
+		}
+		final double value = number.doubleValue();
+		if (unsigned && value >= 0x1p63) {
+			if (strictNumbers && (value != Math.rint(value) || value >= 0x1p64))
+				throw numberError(number.text(), type);
+			// the bits of the unsigned value, saturating at 2^64-1
+			return (long) (value - 0x1p63) ^ Long.MIN_VALUE;
+		}
+		if (strictNumbers && (value != Math.rint(value) || value < (unsigned ? 0 : -0x1p63) || value >= 0x1p63))
+			throw numberError(number.text(), type);
+		return (long) value;
+	}
+
+	/**
+	 * Value of a string read as a long for {@code type}, see {@link #nextLong(MetaType)},
+	 * an empty string is zero. In either mode a string that is not an integer
+	 * within the range of {@code type} fails, a negative {@code uint64} is only
+	 * rejected in strict mode.
+	 */
+	long parseLong(String s, MetaType type) throws IOException {
+		if (s.isEmpty())
+			return 0;
+		final boolean unsigned = type == MetaType.UINT64;
+		long value;
+		try {
+			value = Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			// an integer beyond the range of a long, anything else is not a number
+			final BigInteger big = new BigInteger(s);
+			if (!unsigned || big.signum() < 0 || big.bitLength() > 64)
+				throw numberError(s, type);
+			return big.longValue();
+		}
+		if ((unsigned && strictNumbers && value < 0) || !inRange(value, type))
+			throw numberError(s, type);
+		return value;
+	}
+
+	private static boolean inRange(long value, MetaType type) {
+		switch (type) {
+		case INT8:
+			return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+		case UINT8:
+			return value >= 0 && value <= 0xFF;
+		case INT16:
+			return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+		case UINT16:
+			return value >= 0 && value <= 0xFFFF;
+		case INT32:
+			return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+		case UINT32:
+			return value >= 0 && value <= 0xFFFFFFFFL;
+		default:
+			// int64 and uint64 are range checked as they are read
+			return true;
+		}
+	}
+
+	IOException numberError(String value, MetaType type) {
+		return new IOException(MessageFormat.format(Messages.getString("NUMBER_OUT_OF_RANGE"), getPosition(), value, type.getLanguageType())); //$NON-NLS-1$
+	}
+
+	IOException syntaxError(String detail) {
+		return new IOException(MessageFormat.format(Messages.getString("JSON_SYNTAX_ERROR"), getPosition(), detail)); //$NON-NLS-1$
+	}
+
+
+	static double parseDouble(String s) {
+		return s.isEmpty() ? 0 : Double.parseDouble(s);
+	}
+
+	static BigDecimal parseBigDecimal(String s) {
+		return s.isEmpty() ? new BigDecimal(0) : new BigDecimal(s);
+	}
+}
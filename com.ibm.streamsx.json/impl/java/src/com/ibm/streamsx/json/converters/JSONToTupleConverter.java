@@ -2,6 +2,7 @@ package com.ibm.streamsx.json.converters;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,6 +20,7 @@ import com.ibm.streams.operator.Type;
 import com.ibm.streams.operator.logging.LogLevel;
 import com.ibm.streams.operator.logging.TraceLevel;
 import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.MapType;
 import com.ibm.streams.operator.meta.TupleType;
 import com.ibm.streams.operator.types.RString;
 import com.ibm.streams.operator.types.Timestamp;
@@ -57,34 +59,38 @@ public class JSONToTupleConverter {
 			case UINT8:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).byteValue();
-				return jsonObj.toString().isEmpty() ? 0 : Byte.parseByte(jsonObj.toString());
+				return parseByte(jsonObj.toString());
 			case INT16:
 			case UINT16:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).shortValue();
-				return jsonObj.toString().isEmpty() ? 0 : Short.parseShort(jsonObj.toString());
+				return parseShort(jsonObj.toString());
 			case INT32:
 			case UINT32:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).intValue();
-				return jsonObj.toString().isEmpty() ? 0 : Integer.parseInt(jsonObj.toString());
+				return parseInt(jsonObj.toString());
 			case INT64:
 			case UINT64:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).longValue();
-				return jsonObj.toString().isEmpty() ? 0 : Long.parseLong(jsonObj.toString());
+				return parseLong(jsonObj.toString());
 			case FLOAT32:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).floatValue();
-				return jsonObj.toString().isEmpty() ? 0 : Float.parseFloat(jsonObj.toString());
+				return parseFloat(jsonObj.toString());
 			case FLOAT64:
 				if(jsonObj instanceof Number)
 					return ((Number)jsonObj).doubleValue();
-				return jsonObj.toString().isEmpty() ? 0 : Double.parseDouble(jsonObj.toString());
+				return parseDouble(jsonObj.toString());
 			case DECIMAL32:
 			case DECIMAL64:
 			case DECIMAL128:
-                return jsonObj.toString().isEmpty() ? new java.math.BigDecimal(0) : new java.math.BigDecimal(jsonObj.toString());
+				if(jsonObj instanceof BigDecimal)
+					return jsonObj;
+				if(jsonObj instanceof Long || jsonObj instanceof Integer)
+					return BigDecimal.valueOf(((Number)jsonObj).longValue());
+				return parseBigDecimal(jsonObj.toString());
 
 			case USTRING:
 				return jsonObj.toString();
@@ -123,10 +129,19 @@ public class JSONToTupleConverter {
 					return Timestamp.getTimestamp(((Number)jsonObj).doubleValue());
 				return Timestamp.getTimestamp(jsonObj.toString().isEmpty() ? 0 : Double.parseDouble(jsonObj.toString()));
 
-				//TODO -- not yet supported types
-			case BLOB:
 			case MAP:
 			case BMAP:
+			{
+				MapType mtype = (MapType) type;
+				if(ValueDecoder.isMapKeyType(mtype.getKeyType().getMetaType()))
+					return objectToMap(name, (JSONObject) jsonObj, mtype);
+				if(l.isLoggable(TraceLevel.DEBUG))
+					l.log(TraceLevel.DEBUG, "Ignoring unsupported field: " + name + ", of type: " + type); //$NON-NLS-1$ //$NON-NLS-2$
+				break;
+			}
+
+				//TODO -- not yet supported types
+			case BLOB:
 			case COMPLEX32:
 			case COMPLEX64:
 			default:
@@ -153,6 +168,19 @@ public class JSONToTupleConverter {
 	}
 
 
+	//this is used when a JSON object maps to a SPL map, keys are converted from the member names
+	private static Map<Object, Object> objectToMap(String name, JSONObject jobj, MapType mtype) throws Exception {
+		String cname = "Map: " + name; //$NON-NLS-1$
+		Map<Object, Object> map = new HashMap<Object, Object>(ValueDecoder.mapCapacity(jobj.size()));
+		for(Object e : jobj.entrySet()) {
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) e;
+			Object obj = jsonToAttribute(cname, mtype.getValueType(), entry.getValue(), mtype);
+			if(obj != null)
+				map.put(jsonToAttribute(cname, mtype.getKeyType(), entry.getKey(), mtype), obj);
+		}
+		return map;
+	}
+
 	//this is used when a JSON array maps to a Java array 
 	private static Object arrayToSPLArray(String name, JSONArray jarr, Type ptype) throws Exception {
 		if(l.isLoggable(TraceLevel.DEBUG)) {
@@ -162,105 +190,80 @@ public class JSONToTupleConverter {
 		int cnt=0;
 		String cname = "List: " + name; //$NON-NLS-1$
 
+		// primitive element types are converted directly into an array
+		// sized for the JSON array, trimmed only if null elements were skipped
+		final int size = jarr.size();
 		switch(ctype.getElementType().getMetaType()) {
 		case INT8:
 		case UINT8: 
 		{
-			List<Object> lst = new ArrayList<Object>();
+			byte[] arr= new byte[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).byteValue() : parseByte(jsonObj.toString());
 			}
-
-			byte[] arr= new byte[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Byte)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 		case INT16:
 		case UINT16:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			short[] arr= new short[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).shortValue() : parseShort(jsonObj.toString());
 			}
-
-			short[] arr= new short[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Short)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 		case INT32:
 		case UINT32:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			int[] arr= new int[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).intValue() : parseInt(jsonObj.toString());
 			}
-
-			int[] arr= new int[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Integer)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 
 		case INT64:
 		case UINT64:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			long[] arr= new long[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).longValue() : parseLong(jsonObj.toString());
 			}
-
-			long[] arr= new long[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Long)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 
 		case BOOLEAN:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			boolean[] arr= new boolean[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Boolean ? (Boolean)jsonObj : Boolean.parseBoolean(jsonObj.toString());
 			}
-
-			boolean[] arr= new boolean[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Boolean)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 
 		case FLOAT32:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			float[] arr= new float[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).floatValue() : parseFloat(jsonObj.toString());
 			}
-
-			float[] arr= new float[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Float)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 
 		case FLOAT64:
 		{
-			List<Object> lst = new ArrayList<Object>();
+			double[] arr= new double[size];
 			for(Object jsonObj : jarr) {
-				Object obj =jsonToAttribute(cname, ctype.getElementType(), jsonObj, ptype);
-				if(obj!=null) lst.add(obj);
+				if(jsonObj != null)
+					arr[cnt++] = jsonObj instanceof Number ? ((Number)jsonObj).doubleValue() : parseDouble(jsonObj.toString());
 			}
-
-			double[] arr= new double[lst.size()];
-			for(Object val : lst)
-				arr[cnt++] = (Double)val;
-			return arr;
+			return cnt == size ? arr : Arrays.copyOf(arr, cnt);
 		} 
 
 		case USTRING:
@@ -358,6 +361,34 @@ public class JSONToTupleConverter {
 
 	}
 
+	// string forms of numbers, converted once from the string, an empty string is 0
+	private static byte parseByte(String s) {
+		return s.isEmpty() ? 0 : Byte.parseByte(s);
+	}
+
+	private static short parseShort(String s) {
+		return s.isEmpty() ? 0 : Short.parseShort(s);
+	}
+
+	private static int parseInt(String s) {
+		return s.isEmpty() ? 0 : Integer.parseInt(s);
+	}
+
+	private static long parseLong(String s) {
+		return s.isEmpty() ? 0 : Long.parseLong(s);
+	}
+
+	private static float parseFloat(String s) {
+		return s.isEmpty() ? 0 : Float.parseFloat(s);
+	}
+
+	private static double parseDouble(String s) {
+		return s.isEmpty() ? 0 : Double.parseDouble(s);
+	}
+	private static BigDecimal parseBigDecimal(String s) {
+		return s.isEmpty() ? BigDecimal.ZERO : new BigDecimal(s);
+	}
+
 	/**
 	 * Convert a JSONObject to an SPL tuple with the specified schema. The SPL schema must 
 	 * contain attribute names that match the JSON key names in the JSONObject. 
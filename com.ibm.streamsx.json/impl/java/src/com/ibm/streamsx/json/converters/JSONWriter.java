@@ -0,0 +1,286 @@
+package com.ibm.streamsx.json.converters;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Writes JSON text as UTF-8 bytes into a growable buffer.
+ * <p>
+ * The buffer is reused across conversions by calling {@link #reset()},
+ * so in steady state writing JSON does not allocate.
+ * The writer does not track the structure of the JSON, the caller is
+ * responsible for writing separators between members and elements.
+ */
+public final class JSONWriter {
+
+	static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final byte[] NULL = ascii("null"); //$NON-NLS-1$
+	private static final byte[] TRUE = ascii("true"); //$NON-NLS-1$
+	private static final byte[] FALSE = ascii("false"); //$NON-NLS-1$
+	private static final byte[] LONG_MIN = ascii(Long.toString(Long.MIN_VALUE));
+	private static final byte[] HEX = ascii("0123456789abcdef"); //$NON-NLS-1$
+
+	private byte[] buf;
+	private int count;
+
+	public JSONWriter() {
+		this(256);
+	}
+
+	/**
+	 * @param initialCapacity Initial size of the buffer in bytes.
+	 */
+	public JSONWriter(int initialCapacity) {
+		buf = new byte[initialCapacity];
+	}
+
+	/**
+	 * Discard any written JSON, retaining the buffer.
+	 */
+	public void reset() {
+		count = 0;
+	}
+
+	/**
+	 * Discard the JSON written after the first {@code size} bytes, retaining the buffer.
+	 * @param size Number of bytes to keep, at most {@link #size()}.
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > count)
+			throw new IndexOutOfBoundsException(Integer.toString(size));
+		count = size;
+	}
+
+	/**
+	 * Number of bytes written.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the internal buffer, valid bytes are {@code [0..size())}.
+	 * The buffer may be replaced by subsequent writes.
+	 */
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	/**
+	 * Copy of the written bytes.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, count);
+	}
+
+	/**
+	 * The written JSON as a String.
+	 */
+	@Override
+	public String toString() {
+		return new String(buf, 0, count, UTF8);
+	}
+
+	private void ensureCapacity(int extra) {
+		int required = count + extra;
+		if (required > buf.length)
+			buf = Arrays.copyOf(buf, Math.max(required, buf.length * 2));
+	}
+
+	/**
+	 * Write a single byte, used for structural characters.
+	 */
+	public void write(char c) {
+		if (count == buf.length)
+			ensureCapacity(1);
+		buf[count++] = (byte) c;
+	}
+
+	/**
+	 * Write pre-encoded bytes verbatim.
+	 */
+	public void writeRaw(byte[] bytes) {
+		writeRaw(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Write pre-encoded bytes verbatim.
+	 */
+	public void writeRaw(byte[] bytes, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(bytes, off, buf, count, len);
+		count += len;
+	}
+
+	/**
+	 * Write JSON text verbatim.
+	 */
+	public void writeRaw(String json) {
+		writeRaw(json.getBytes(UTF8));
+	}
+
+	public void writeNull() {
+		writeRaw(NULL);
+	}
+
+	public void writeBoolean(boolean value) {
+		writeRaw(value ? TRUE : FALSE);
+	}
+
+	public void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			writeRaw(LONG_MIN);
+			return;
+		}
+		ensureCapacity(20);
+		if (value < 0) {
+			buf[count++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10)
+			digits++;
+		int p = count + digits;
+		count = p;
+		do {
+			buf[--p] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+	}
+
+	/**
+	 * Write a float, non-finite values are written as null.
+	 */
+	public void writeFloat(float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value))
+			writeNull();
+		else
+			writeAscii(Float.toString(value));
+	}
+
+	/**
+	 * Write a double, non-finite values are written as null.
+	 */
+	public void writeDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			writeNull();
+		else
+			writeAscii(Double.toString(value));
+	}
+
+	public void writeBigDecimal(BigDecimal value) {
+		writeAscii(value.toString());
+	}
+
+	private void writeAscii(String s) {
+		final int len = s.length();
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++)
+			buf[count++] = (byte) s.charAt(i);
+	}
+
+	/**
+	 * Write a quoted and escaped JSON string encoded as UTF-8.
+	 */
+	public void writeString(CharSequence s) {
+		final int len = s.length();
+		// worst case is six bytes per character for escaped control characters
+		ensureCapacity(len * 6 + 2);
+		final byte[] buf = this.buf;
+		int p = count;
+		buf[p++] = '"';
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (c >= 0x20 && c != '"' && c != '\\') {
+					buf[p++] = (byte) c;
+				} else {
+					p = escape(buf, p, c);
+				}
+			} else if (c < 0x800) {
+				buf[p++] = (byte) (0xc0 | (c >> 6));
+				buf[p++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buf[p++] = (byte) (0xf0 | (cp >> 18));
+				buf[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[p++] = (byte) (0x80 | (cp & 0x3f));
+			} else {
+				buf[p++] = (byte) (0xe0 | (c >> 12));
+				buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buf[p++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		buf[p++] = '"';
+		count = p;
+	}
+
+	/**
+	 * Write a quoted and escaped JSON string from bytes that are already UTF-8 encoded.
+	 */
+	public void writeUTF8String(byte[] utf8, int off, int len) {
+		ensureCapacity(len * 6 + 2);
+		final byte[] buf = this.buf;
+		int p = count;
+		buf[p++] = '"';
+		for (int i = off; i < off + len; i++) {
+			byte b = utf8[i];
+			// bytes of multi-byte sequences are negative and copied unchanged
+			if (b >= 0x20 && b != '"' && b != '\\' || b < 0)
+				buf[p++] = b;
+			else
+				p = escape(buf, p, (char) b);
+		}
+		buf[p++] = '"';
+		count = p;
+	}
+
+	private static int escape(byte[] buf, int p, char c) {
+		buf[p++] = '\\';
+		switch (c) {
+		case '"':
+		case '\\':
+			buf[p++] = (byte) c;
+			break;
+		case '\b':
+			buf[p++] = 'b';
+			break;
+		case '\f':
+			buf[p++] = 'f';
+			break;
+		case '\n':
+			buf[p++] = 'n';
+			break;
+		case '\r':
+			buf[p++] = 'r';
+			break;
+		case '\t':
+			buf[p++] = 't';
+			break;
+		default:
+			buf[p++] = 'u';
+			buf[p++] = '0';
+			buf[p++] = '0';
+			buf[p++] = HEX[(c >> 4) & 0xf];
+			buf[p++] = HEX[c & 0xf];
+		}
+		return p;
+	}
+
+	static byte[] ascii(String s) {
+		return s.getBytes(UTF8);
+	}
+
+	/**
+	 * Encode a member name as the bytes {@code "name":}.
+	 */
+	static byte[] memberName(String name) {
+		JSONWriter w = new JSONWriter(name.length() + 8);
+		w.writeString(name);
+		w.write(':');
+		return w.toByteArray();
+	}
+}
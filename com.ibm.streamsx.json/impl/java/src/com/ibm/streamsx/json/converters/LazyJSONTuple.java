@@ -0,0 +1,267 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * View of a JSON object encoded as UTF-8 as a tuple of a fixed schema
+ * that only decodes the attributes that are read.
+ * <p>
+ * The JSON bytes are kept as they are. When an attribute is first accessed
+ * the object is scanned once to index the offsets of the value of each member
+ * that matches an attribute, skipping over the values without decoding them.
+ * An attribute is then decoded from its offsets when it is first read.
+ * <p>
+ * Attributes can be modified, when the view is written as JSON with
+ * {@link #encode(JSONWriter)} an unmodified object is copied verbatim,
+ * otherwise the unchanged bytes are copied and only the values of modified
+ * attributes are encoded, replacing their values in the object or appended
+ * to it for attributes that are not present.
+ * <p>
+ * This suits flows that pass JSON objects through while reading or modifying
+ * a few attributes, avoiding the conversion of the complete object to a tuple
+ * and back. Values are converted as by {@link TupleDecoder} and {@link TupleEncoder},
+ * attributes that are not present in the object or are {@code null} have their
+ * default value. If the object has more than one member with the same name
+ * the last one is used, both when reading attributes and by {@link #toTuple()},
+ * and it is the one replaced when the attribute is modified.
+ * The JSON is only checked as far as it is read, so an invalid
+ * value of a member that is not read may not be detected.
+ * <p>
+ * The JSON bytes are not copied and must not be modified while the view is used.
+ * Not thread safe, a view is reused for successive objects with {@link #reset(byte[], int, int)}.
+ */
+public final class LazyJSONTuple {
+
+	private final StreamSchema schema;
+	private final TupleDecoder decoder;
+	private final TupleEncoder encoder;
+	private final UTF8JSONReader reader = new UTF8JSONReader();
+
+	private byte[] json;
+	private int off;
+	private int len;
+
+	/** True once the members of the object have been indexed. */
+	private boolean indexed;
+	/** Number of members in the object. */
+	private int members;
+	/** Offsets of the value of each attribute, -1 if the attribute is not present. */
+	private final int[] starts;
+	private final int[] ends;
+	/** Offset of the closing brace of the object. */
+	private int close;
+
+	/** Values that have been read or set. */
+	private final Object[] values;
+	private final boolean[] loaded;
+	private final boolean[] modified;
+	private int modifiedCount;
+
+	/**
+	 * Create a view of JSON objects as tuples of {@code schema}.
+	 * @param schema Schema of the tuples.
+	 */
+	public LazyJSONTuple(StreamSchema schema) {
+		this.schema = schema;
+		decoder = TupleDecoder.forSchema(schema);
+		encoder = TupleEncoder.forSchema(schema);
+		final int count = schema.getAttributeCount();
+		starts = new int[count];
+		ends = new int[count];
+		values = new Object[count];
+		loaded = new boolean[count];
+		modified = new boolean[count];
+	}
+
+	/**
+	 * Reset this view to the JSON object {@code json[off..off+len)},
+	 * discarding any values read or set.
+	 */
+	public void reset(byte[] json, int off, int len) {
+		this.json = json;
+		this.off = off;
+		this.len = len;
+		indexed = false;
+		Arrays.fill(values, null);
+		Arrays.fill(loaded, false);
+		Arrays.fill(modified, false);
+		modifiedCount = 0;
+	}
+
+	/**
+	 * Get the schema of the tuple.
+	 */
+	public StreamSchema getStreamSchema() {
+		return schema;
+	}
+
+	/**
+	 * True if the object has a member for the attribute, its value may be {@code null}.
+	 * @throws IOException If the JSON is not an object.
+	 */
+	public boolean isPresent(int index) throws IOException {
+		index();
+		return starts[index] != -1;
+	}
+
+	/**
+	 * Get the value of an attribute, decoding it on first access.
+	 * @param index Index of the attribute.
+	 * @return Value of the attribute, or its default value if it is not present or {@code null}.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public Object getObject(int index) throws IOException {
+		if (!loaded[index]) {
+			index();
+			Object value = null;
+			if (starts[index] != -1) {
+				reader.reset(json, starts[index], ends[index] - starts[index]);
+				value = decoder.getDecoder(index).decode(reader);
+			}
+			values[index] = value != null ? value : decoder.getDefault(index);
+			loaded[index] = true;
+		}
+		return values[index];
+	}
+
+	/**
+	 * Get the value of an attribute by name.
+	 * @see #getObject(int)
+	 */
+	public Object getObject(String name) throws IOException {
+		return getObject(attributeIndex(name));
+	}
+
+	/**
+	 * Set the value of an attribute.
+	 * @param index Index of the attribute.
+	 * @param value Value using the Java representation of the attribute's type.
+	 */
+	public void setObject(int index, Object value) {
+		if (value == null)
+			throw new NullPointerException(schema.getAttribute(index).getName());
+		values[index] = value;
+		loaded[index] = true;
+		if (!modified[index]) {
+			modified[index] = true;
+			modifiedCount++;
+		}
+	}
+
+	/**
+	 * Set the value of an attribute by name.
+	 * @see #setObject(int, Object)
+	 */
+	public void setObject(String name, Object value) {
+		setObject(attributeIndex(name), value);
+	}
+
+	/**
+	 * True if any attribute has been set.
+	 */
+	public boolean isModified() {
+		return modifiedCount != 0;
+	}
+
+	private int attributeIndex(String name) {
+		final int index = schema.getAttributeIndex(name);
+		if (index < 0)
+			throw new IllegalArgumentException(name);
+		return index;
+	}
+
+	/**
+	 * Index the offsets of the members of the object that match attributes,
+	 * a later member with the same name replaces an earlier one.
+	 */
+	private void index() throws IOException {
+		if (indexed)
+			return;
+		Arrays.fill(starts, -1);
+		members = 0;
+		final NameTable names = decoder.getNames();
+		reader.reset(json, off, len);
+		reader.beginObject();
+		while (reader.hasNextMember()) {
+			members++;
+			final int index = reader.nextName(names);
+			reader.peek();
+			final int start = reader.getPosition();
+			reader.skipValue();
+			if (index >= 0) {
+				starts[index] = start;
+				ends[index] = reader.getPosition();
+			}
+		}
+		close = reader.getPosition() - 1;
+		indexed = true;
+	}
+
+	/**
+	 * Write the object as JSON, including any modified attributes.
+	 * @param writer Writer the JSON is written to.
+	 * @throws IOException If there was a problem reading the JSON or converting a modified value.
+	 */
+	public void encode(JSONWriter writer) throws IOException {
+		if (modifiedCount == 0) {
+			writer.writeRaw(json, off, len);
+			return;
+		}
+		index();
+
+		// the encoders read values from a tuple, unmodified attributes are not encoded
+		final Object[] tupleValues = new Object[values.length];
+		for (int i = 0; i < values.length; i++)
+			tupleValues[i] = modified[i] ? values[i] : decoder.getDefault(i);
+		final Tuple tuple = schema.getTuple(tupleValues);
+
+		// replace the values of modified members in the order they appear in the object
+		final long[] replaced = new long[modifiedCount];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (modified[i] && starts[i] != -1)
+				replaced[count++] = (long) starts[i] << 32 | i;
+		}
+		Arrays.sort(replaced, 0, count);
+		int pos = off;
+		for (int r = 0; r < count; r++) {
+			final int i = (int) replaced[r];
+			writer.writeRaw(json, pos, starts[i] - pos);
+			encoder.encodeAttribute(tuple, i, writer);
+			pos = ends[i];
+		}
+		writer.writeRaw(json, pos, close - pos);
+
+		// append the modified attributes that are not present
+		boolean first = members == 0;
+		for (int i = 0; i < values.length; i++) {
+			if (!modified[i] || starts[i] != -1)
+				continue;
+			if (!first)
+				writer.write(',');
+			first = false;
+			writer.writeRaw(JSONWriter.memberName(schema.getAttribute(i).getName()));
+			encoder.encodeAttribute(tuple, i, writer);
+		}
+		writer.writeRaw(json, close, off + len - close);
+	}
+
+	/**
+	 * Convert the object to a tuple, including any modified attributes.
+	 * Attributes are decoded from the indexed members rather than by
+	 * {@link TupleDecoder#decodeTuple(JSONReader)}, which stops at the first
+	 * complete set of members, so duplicate members resolve as for {@link #getObject(int)}.
+	 * @return Tuple with the schema of this view.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public Tuple toTuple() throws IOException {
+		final Object[] all = new Object[values.length];
+		for (int i = 0; i < all.length; i++)
+			all[i] = getObject(i);
+		return schema.getTuple(all);
+	}
+}
@@ -0,0 +1,126 @@
+package com.ibm.streamsx.json.converters;
+
+/**
+ * Open addressing lookup table from JSON key names to attribute indexes.
+ * Keys are matched directly against the characters or UTF-8 bytes in the
+ * reader's buffer so that names of JSON members are never materialized as Strings.
+ */
+final class NameTable {
+
+	private final char[][] names;
+	private final int[] hashes;
+	private final int[] values;
+	private final int mask;
+
+	/* Same names encoded as UTF-8, hashed by bytes. */
+	private final byte[][] byteNames;
+	private final int[] byteHashes;
+	private final int[] byteValues;
+
+	/**
+	 * Create a table where the value of each name is its index in {@code names}.
+	 * Null entries are not added to the table.
+	 */
+	NameTable(String[] names) {
+		int size = 4;
+		while (size < names.length * 2)
+			size <<= 1;
+		this.names = new char[size][];
+		this.hashes = new int[size];
+		this.values = new int[size];
+		this.mask = size - 1;
+		this.byteNames = new byte[size][];
+		this.byteHashes = new int[size];
+		this.byteValues = new int[size];
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] != null) {
+				put(names[i], i);
+				putBytes(names[i].getBytes(JSONWriter.UTF8), i);
+			}
+		}
+	}
+
+	private void put(String name, int value) {
+		int hash = name.hashCode();
+		int slot = hash & mask;
+		while (names[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		names[slot] = name.toCharArray();
+		hashes[slot] = hash;
+		values[slot] = value;
+	}
+
+	private void putBytes(byte[] name, int value) {
+		int hash = hash(name, 0, name.length);
+		int slot = hash & mask;
+		while (byteNames[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		byteNames[slot] = name;
+		byteHashes[slot] = hash;
+		byteValues[slot] = value;
+	}
+
+	/**
+	 * Hash of UTF-8 bytes, for ASCII names this is the same as {@link String#hashCode()}.
+	 */
+	static int hash(byte[] buf, int off, int len) {
+		int hash = 0;
+		for (int i = off; i < off + len; i++)
+			hash = 31 * hash + (buf[i] & 0xff);
+		return hash;
+	}
+
+	/**
+	 * Find the name held in {@code buf[off..off+len)}.
+	 * @param hash Hash of the characters computed as {@link String#hashCode()}.
+	 * @return Value of the name or -1 if it is not in the table.
+	 */
+	int find(char[] buf, int off, int len, int hash) {
+		int slot = hash & mask;
+		char[] name;
+		while ((name = names[slot]) != null) {
+			if (hashes[slot] == hash && name.length == len && regionMatches(name, buf, off))
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the name whose UTF-8 encoding is held in {@code buf[off..off+len)}.
+	 * @param hash Hash of the bytes computed as {@link #hash(byte[], int, int)}.
+	 * @return Value of the name or -1 if it is not in the table.
+	 */
+	int find(byte[] buf, int off, int len, int hash) {
+		int slot = hash & mask;
+		byte[] name;
+		while ((name = byteNames[slot]) != null) {
+			if (byteHashes[slot] == hash && name.length == len && regionMatches(name, buf, off))
+				return byteValues[slot];
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	int find(String key) {
+		return find(key.toCharArray(), 0, key.length(), key.hashCode());
+	}
+
+	private static boolean regionMatches(char[] name, char[] buf, int off) {
+		for (int i = 0; i < name.length; i++) {
+			if (name[i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean regionMatches(byte[] name, byte[] buf, int off) {
+		for (int i = 0; i < name.length; i++) {
+			if (name[i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+}
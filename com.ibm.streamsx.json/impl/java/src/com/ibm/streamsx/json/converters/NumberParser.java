@@ -0,0 +1,359 @@
+package com.ibm.streamsx.json.converters;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Converts JSON numbers directly from the buffer of a {@link JSONReader}
+ * without creating a String.
+ * <p>
+ * A number is scanned once into its sign, the first 19 significant digits
+ * and a power of ten. Integers are produced exactly from the digits.
+ * Doubles use the Clinger fast path when the digits and the power of ten are
+ * exact doubles, otherwise the Eisel-Lemire algorithm, which computes the
+ * correctly rounded double from a 128 bit approximation of the power of ten.
+ * Decimals of up to 18 digits are created from their unscaled value and scale.
+ * Numbers with more digits than these paths handle are converted from their text.
+ * <p>
+ * The text must be a valid JSON number, as scanned by the reader.
+ * Not thread safe, each reader has its own parser.
+ */
+final class NumberParser {
+
+	/** Maximum number of significant digits held exactly in a long. */
+	private static final int MAX_DIGITS = 19;
+
+	/** Decimals with a scale beyond this are converted from their text. */
+	private static final int MAX_SCALE = 10000;
+
+	/* Range of powers of ten for which the double is neither zero nor infinite. */
+	private static final int SMALLEST_POWER = -342;
+	private static final int LARGEST_POWER = 308;
+
+	/** Powers of ten that are exact doubles, for the Clinger fast path. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * 128 bit approximations of the powers of five from {@link #SMALLEST_POWER}
+	 * to {@link #LARGEST_POWER}, normalized so the most significant bit is set,
+	 * as pairs of the high and low 64 bits.
+	 * Negative powers are rounded up, positive powers truncated.
+	 */
+	private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+	private static long[] powersOfFive() {
+		final long[] table = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+		final BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+		int i = 0;
+		for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+			BigInteger c;
+			if (q < 0) {
+				final BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+				// z is the number of bits needed for 5^-q, rounded up to a power of two
+				final int z = power5.subtract(BigInteger.ONE).bitLength();
+				final int b = q >= -27 ? z + 127 : 2 * z + 128;
+				c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+				while (c.compareTo(two128) >= 0)
+					c = c.shiftRight(1);
+			} else {
+				c = BigInteger.valueOf(5).pow(q);
+				if (c.bitLength() < 128)
+					c = c.shiftLeft(128 - c.bitLength());
+				else
+					c = c.shiftRight(c.bitLength() - 128);
+			}
+			table[i++] = c.shiftRight(64).longValue();
+			table[i++] = c.longValue();
+		}
+		return table;
+	}
+
+	/* Result of the last scan. */
+	private boolean negative;
+	private boolean integral;
+	/** First 19 significant digits. */
+	private long significand;
+	/** Number of significant digits, the significand is truncated if there are more than 19. */
+	private int digits;
+	/** Power of ten the significand is multiplied by. */
+	private int exponent;
+
+	/* Text of the last number scanned, for numbers converted from their text. */
+	private byte[] bytes;
+	private char[] chars;
+	private int start;
+	private int end;
+
+	/**
+	 * Scan the JSON number {@code buf[off..end)}.
+	 */
+	NumberParser scan(byte[] buf, int off, int end) {
+		bytes = buf;
+		chars = null;
+		start = off;
+		this.end = end;
+		int i = off;
+		negative = buf[i] == '-';
+		if (negative)
+			i++;
+		long w = 0;
+		int n = 0;
+		int exp = 0;
+		boolean fraction = false;
+		for (; i < end; i++) {
+			final int c = buf[i];
+			if (c == '.') {
+				fraction = true;
+				continue;
+			}
+			final int d = c - '0';
+			if (d < 0 || d > 9)
+				break;
+			if (w != 0 || d != 0 || n != 0) {
+				if (++n <= MAX_DIGITS)
+					w = w * 10 + d;
+				else if (!fraction)
+					exp++;
+			}
+			if (fraction && n <= MAX_DIGITS)
+				exp--;
+		}
+		integral = !fraction && i == end;
+		if (i < end) {
+			// exponent, the magnitude is capped as any larger value is zero or infinite
+			i++;
+			final boolean expNegative = buf[i] == '-';
+			if (expNegative || buf[i] == '+')
+				i++;
+			int e = 0;
+			for (; i < end; i++) {
+				if (e < 100000)
+					e = e * 10 + buf[i] - '0';
+			}
+			exp += expNegative ? -e : e;
+		}
+		significand = w;
+		digits = n;
+		exponent = exp;
+		return this;
+	}
+
+	/**
+	 * Scan the JSON number {@code buf[off..end)}.
+	 */
+	NumberParser scan(char[] buf, int off, int end) {
+		bytes = null;
+		chars = buf;
+		start = off;
+		this.end = end;
+		int i = off;
+		negative = buf[i] == '-';
+		if (negative)
+			i++;
+		long w = 0;
+		int n = 0;
+		int exp = 0;
+		boolean fraction = false;
+		for (; i < end; i++) {
+			final int c = buf[i];
+			if (c == '.') {
+				fraction = true;
+				continue;
+			}
+			final int d = c - '0';
+			if (d < 0 || d > 9)
+				break;
+			if (w != 0 || d != 0 || n != 0) {
+				if (++n <= MAX_DIGITS)
+					w = w * 10 + d;
+				else if (!fraction)
+					exp++;
+			}
+			if (fraction && n <= MAX_DIGITS)
+				exp--;
+		}
+		integral = !fraction && i == end;
+		if (i < end) {
+			i++;
+			final boolean expNegative = buf[i] == '-';
+			if (expNegative || buf[i] == '+')
+				i++;
+			int e = 0;
+			for (; i < end; i++) {
+				if (e < 100000)
+					e = e * 10 + buf[i] - '0';
+			}
+			exp += expNegative ? -e : e;
+		}
+		significand = w;
+		digits = n;
+		exponent = exp;
+		return this;
+	}
+
+	/**
+	 * True if the number has no fraction or exponent.
+	 */
+	boolean isIntegral() {
+		return integral;
+	}
+
+	/**
+	 * Text of the number.
+	 */
+	String text() {
+		return bytes != null ? new String(bytes, start, end - start, UTF8JSONReader.LATIN1) : new String(chars, start, end - start);
+	}
+
+	/**
+	 * True if the number has a minus sign, including {@code -0}.
+	 */
+	boolean isNegative() {
+		return negative;
+	}
+
+	/**
+	 * True if an integral number is within the range of a long, or if {@code unsigned}
+	 * is true within the range of either a long or an unsigned 64 bit integer.
+	 */
+	boolean isLong(boolean unsigned) {
+		final long w = significand;
+		if (digits <= MAX_DIGITS) {
+			// the significand is an unsigned value up to 10^19-1
+			return w >= 0 || (unsigned && !negative) || (negative && w == Long.MIN_VALUE);
+		}
+		// up to 2^64-1 = 18446744073709551615, the significand holds its first 19 digits
+		return unsigned && !negative && digits == MAX_DIGITS + 1
+				&& (unsignedLess(w, 1844674407370955161L) || (w == 1844674407370955161L && lastDigit() <= 5));
+	}
+
+	/**
+	 * Value of an integral number for which {@link #isLong(boolean)} is true,
+	 * an unsigned value beyond the range of a long is held in a long with the same bits.
+	 */
+	long longValue() {
+		if (digits <= MAX_DIGITS)
+			return negative ? -significand : significand;
+		return significand * 10 + lastDigit();
+	}
+
+	private int lastDigit() {
+		return (bytes != null ? bytes[end - 1] : chars[end - 1]) - '0';
+	}
+
+	/**
+	 * Value of the number as the nearest double.
+	 */
+	double doubleValue() {
+		if (digits <= MAX_DIGITS) {
+			final double d = toDouble(significand, exponent);
+			if (!Double.isNaN(d))
+				return negative ? -d : d;
+		}
+		return Double.parseDouble(text());
+	}
+
+	/**
+	 * Exact value of the number as a decimal, with the scale
+	 * given by the number of fraction digits and the exponent.
+	 */
+	BigDecimal decimalValue() {
+		if (digits < MAX_DIGITS && exponent > -MAX_SCALE && exponent < MAX_SCALE)
+			return BigDecimal.valueOf(negative ? -significand : significand, -exponent);
+		return new BigDecimal(text());
+	}
+
+	/**
+	 * Convert {@code w * 10^q} to the nearest double.
+	 * @return The double, or NaN if it must be converted from the text.
+	 */
+	static double toDouble(long w, int q) {
+		if (w == 0 || q < SMALLEST_POWER)
+			return 0;
+		if (q > LARGEST_POWER)
+			return Double.POSITIVE_INFINITY;
+		// Clinger: both w and 10^q are exact doubles so a single operation rounds correctly
+		if (q >= -22 && q <= 22 && w >= 0 && w <= 1L << 53)
+			return q < 0 ? w / POWERS_OF_TEN[-q] : w * POWERS_OF_TEN[q];
+		return eiselLemire(w, q);
+	}
+
+	/**
+	 * Eisel-Lemire: multiply the normalized significand by the 128 bit
+	 * approximation of 5^q, the high bits of the product give the
+	 * mantissa and the binary exponent follows from q.
+	 */
+	private static double eiselLemire(long w, int q) {
+		final int lz = Long.numberOfLeadingZeros(w);
+		w <<= lz;
+		final int index = 2 * (q - SMALLEST_POWER);
+
+		long high = multiplyHigh(w, POWERS_OF_FIVE[index]);
+		long low = w * POWERS_OF_FIVE[index];
+		// 55 bits of precision are needed, refine the product with the low
+		// bits of 5^q when the bits below them could carry into them
+		if ((high & 0x1FFL) == 0x1FFL) {
+			final long second = multiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+			low += second;
+			if (unsignedLess(low, second))
+				high++;
+		}
+
+		final int upperbit = (int) (high >>> 63);
+		final int shift = upperbit + 9;
+		long mantissa = high >>> shift;
+		// binary exponent: floor(q * log2(10)) + 63, biased by 1023
+		int power2 = ((217706 * q) >> 16) + 63 + upperbit - lz + 1023;
+
+		if (power2 <= 0) {
+			// subnormal
+			if (-power2 + 1 >= 64)
+				return 0;
+			mantissa >>>= -power2 + 1;
+			mantissa += mantissa & 1;
+			mantissa >>>= 1;
+			power2 = mantissa < 1L << 52 ? 0 : 1;
+			return Double.longBitsToDouble(mantissa | (long) power2 << 52);
+		}
+
+		// exactly halfway between two doubles, only possible when 5^q
+		// fits in 64 bits, round to even rather than up
+		if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (mantissa & 3) == 1
+				&& mantissa << shift == high) {
+			mantissa &= ~1L;
+		}
+
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >= 2L << 52) {
+			mantissa = 1L << 52;
+			power2++;
+		}
+		mantissa &= ~(1L << 52);
+		if (power2 >= 0x7FF)
+			return Double.POSITIVE_INFINITY;
+		return Double.longBitsToDouble(mantissa | (long) power2 << 52);
+	}
+
+	/**
+	 * High 64 bits of the unsigned 128 bit product of {@code a} and {@code b}.
+	 */
+	static long multiplyHigh(long a, long b) {
+		final long aLow = a & 0xFFFFFFFFL;
+		final long aHigh = a >>> 32;
+		final long bLow = b & 0xFFFFFFFFL;
+		final long bHigh = b >>> 32;
+		final long lowLow = aLow * bLow;
+		final long highLow = aHigh * bLow;
+		final long lowHigh = aLow * bHigh;
+		final long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+		return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+	}
+
+	private static boolean unsignedLess(long a, long b) {
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+}
@@ -0,0 +1,233 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Level of the tree of JSON paths read by a {@link TupleDecoder},
+ * compiled from mappings of attributes to JSON paths.
+ * <p>
+ * An object node matches members by name and an array node matches
+ * elements by index. Each matched member or element is either the value
+ * of an attribute or a nested node, all other values are skipped.
+ * Values that are not of the kind expected by a nested node,
+ * for example a string where the path expects an object, are skipped.
+ */
+final class PathNode {
+
+	private final boolean array;
+	/** Member names of an object node, the value of each name is its slot. */
+	private final NameTable names;
+	/** Attribute index for each slot, or -1. */
+	private final int[] attributes;
+	/** Nested node for each slot, or null. */
+	private final PathNode[] children;
+
+	private PathNode(Builder builder) {
+		array = builder.array;
+		final int count = array ? (builder.elements.isEmpty() ? 0 : builder.elements.lastKey() + 1) : builder.members.size();
+		attributes = new int[count];
+		children = new PathNode[count];
+		String[] slotNames = new String[count];
+		int slot = 0;
+		for (int i = 0; i < count; i++)
+			attributes[i] = -1;
+		if (array) {
+			for (Map.Entry<Integer, Object> e : builder.elements.entrySet())
+				setSlot(e.getKey(), e.getValue());
+		} else {
+			for (Map.Entry<String, Object> e : builder.members.entrySet()) {
+				slotNames[slot] = e.getKey();
+				setSlot(slot++, e.getValue());
+			}
+		}
+		names = array ? null : new NameTable(slotNames);
+	}
+
+	private void setSlot(int slot, Object value) {
+		if (value instanceof Integer)
+			attributes[slot] = (Integer) value;
+		else
+			children[slot] = new PathNode((Builder) value);
+	}
+
+	/**
+	 * Read the next value, setting the values of attributes found along the paths.
+	 * @param values Values by attribute index, only set for non-null decoded values.
+	 */
+	void read(JSONReader reader, ValueDecoder[] decoders, Object[] values) throws IOException {
+		if (reader.peek() != (array ? JSONReader.ARRAY : JSONReader.OBJECT)) {
+			reader.skipValue();
+			return;
+		}
+		readValue(reader, decoders, values);
+	}
+
+	/**
+	 * Read the next value which must be an object, or an array for an array node.
+	 * @throws IOException If the value is not of the expected kind.
+	 */
+	void readValue(JSONReader reader, ValueDecoder[] decoders, Object[] values) throws IOException {
+		if (array) {
+			reader.beginArray();
+			for (int index = 0; reader.hasNextElement(); index++) {
+				if (index == attributes.length) {
+					reader.skipToEnd();
+					return;
+				}
+				readSlot(reader, index, decoders, values);
+			}
+		} else {
+			reader.beginObject();
+			while (reader.hasNextMember()) {
+				final int slot = reader.nextName(names);
+				if (slot < 0) {
+					reader.skippedMembers++;
+					reader.skipValue();
+					continue;
+				}
+				readSlot(reader, slot, decoders, values);
+			}
+		}
+	}
+
+	private void readSlot(JSONReader reader, int slot, ValueDecoder[] decoders, Object[] values) throws IOException {
+		final int attr = attributes[slot];
+		if (attr != -1) {
+			Object value = decoders[attr].decode(reader);
+			if (value != null)
+				values[attr] = value;
+		} else if (children[slot] != null) {
+			children[slot].read(reader, decoders, values);
+		} else {
+			reader.skipValue();
+		}
+	}
+
+	/**
+	 * Compile the tree of paths for a schema.
+	 * @param attrNames Names of the attributes by index, null for attributes that are not read.
+	 * @param paths JSON paths keyed by attribute name. Attributes without a path are read from
+	 * the member of the root object with the same name, unless that member is on the path of an attribute.
+	 * @throws IllegalArgumentException If a path is not valid or paths conflict.
+	 */
+	static PathNode compile(String[] attrNames, Map<String, String> paths) {
+		Builder root = null;
+		for (int i = 0; i < attrNames.length; i++) {
+			if (attrNames[i] == null)
+				continue;
+			final String path = paths.get(attrNames[i]);
+			if (path == null)
+				continue;
+			List<Object> segments = parse(path);
+			if (root == null)
+				root = new Builder(segments.get(0) instanceof Integer);
+			root.add(segments, 0, i, path);
+		}
+		if (root == null)
+			root = new Builder(false);
+		if (!root.array) {
+			for (int i = 0; i < attrNames.length; i++) {
+				if (attrNames[i] != null && !paths.containsKey(attrNames[i]) && !root.members.containsKey(attrNames[i]))
+					root.members.put(attrNames[i], i);
+			}
+		}
+		return new PathNode(root);
+	}
+
+	/**
+	 * Parse a path of the form {@code $.a.b[0]['c.d']} into
+	 * member names (String) and element indexes (Integer).
+	 */
+	static List<Object> parse(String path) {
+		List<Object> segments = new ArrayList<>();
+		if (!path.startsWith("$")) //$NON-NLS-1$
+			throw invalidPath(path, "must start with $"); //$NON-NLS-1$
+		int i = 1;
+		final int len = path.length();
+		while (i < len) {
+			final char c = path.charAt(i);
+			if (c == '.') {
+				int start = ++i;
+				while (i < len && path.charAt(i) != '.' && path.charAt(i) != '[')
+					i++;
+				if (i == start)
+					throw invalidPath(path, "empty member name"); //$NON-NLS-1$
+				segments.add(path.substring(start, i));
+			} else if (c == '[') {
+				final int close = path.indexOf(']', i);
+				if (close == -1)
+					throw invalidPath(path, "missing ]"); //$NON-NLS-1$
+				final String s = path.substring(i + 1, close).trim();
+				if (s.length() >= 2 && (s.charAt(0) == '\'' || s.charAt(0) == '"') && s.charAt(s.length() - 1) == s.charAt(0)) {
+					segments.add(s.substring(1, s.length() - 1));
+				} else {
+					try {
+						int index = Integer.parseInt(s);
+						if (index < 0)
+							throw invalidPath(path, "negative index"); //$NON-NLS-1$
+						segments.add(index);
+					} catch (NumberFormatException e) {
+						throw invalidPath(path, "invalid index " + s); //$NON-NLS-1$
+					}
+				}
+				i = close + 1;
+			} else {
+				throw invalidPath(path, "unexpected character '" + c + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		if (segments.isEmpty())
+			throw invalidPath(path, "path must select a member or element"); //$NON-NLS-1$
+		return segments;
+	}
+
+	private static IllegalArgumentException invalidPath(String path, String detail) {
+		return new IllegalArgumentException(MessageFormat.format(Messages.getString("INVALID_JSON_PATH"), path, detail)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Mutable form of a node used while the paths are added.
+	 * Values are Integer attribute indexes or nested builders.
+	 */
+	private static final class Builder {
+		final boolean array;
+		final LinkedHashMap<String, Object> members = new LinkedHashMap<>();
+		final TreeMap<Integer, Object> elements = new TreeMap<>();
+
+		Builder(boolean array) {
+			this.array = array;
+		}
+
+		void add(List<Object> segments, int depth, int attr, String path) {
+			final Object key = segments.get(depth);
+			if ((key instanceof Integer) != array)
+				throw invalidPath(path, "conflicts with the path of another attribute"); //$NON-NLS-1$
+			final Object existing = array ? elements.get(key) : members.get(key);
+			final boolean leaf = depth == segments.size() - 1;
+			if (existing != null && (leaf || existing instanceof Integer))
+				throw invalidPath(path, "conflicts with the path of another attribute"); //$NON-NLS-1$
+			if (leaf) {
+				put(key, attr);
+				return;
+			}
+			Builder child = (Builder) existing;
+			if (child == null) {
+				child = new Builder(segments.get(depth + 1) instanceof Integer);
+				put(key, child);
+			}
+			child.add(segments, depth + 1, attr, path);
+		}
+
+		private void put(Object key, Object value) {
+			if (array)
+				elements.put((Integer) key, value);
+			else
+				members.put((String) key, value);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.ibm.streamsx.json.converters;
+
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * Bounded cache of the values of a string attribute, so that a JSON string
+ * seen repeatedly, for example the value of an enumeration, is decoded
+ * once and the same immutable {@code String} or {@code RString} is
+ * returned each time it is read.
+ * <p>
+ * Values are keyed by the UTF-8 bytes or characters of the JSON string in
+ * the reader's buffer, a hit creates no objects. When the cache is full the
+ * least recently used values are evicted using the CLOCK algorithm.
+ * <p>
+ * An adaptive cache monitors its hit rate and stops caching once it
+ * sees that the values of the attribute rarely repeat.
+ * <p>
+ * Lookups are lock free and can be made from multiple threads,
+ * values are added under the cache's lock.
+ */
+final class StringCache {
+
+	/** Number of lookups an adaptive cache makes before deciding whether to continue caching. */
+	static final int SAMPLE_SIZE = 4096;
+
+	private static final class Entry {
+		/** UTF-8 bytes (byte[]) or characters (char[]) of the JSON string. */
+		final Object key;
+		final int hash;
+		final Object value;
+		final Entry next;
+		/** Index of the entry in the clock. */
+		final int slot;
+		/** Reference bit of the CLOCK algorithm, races only affect the choice of victim. */
+		boolean referenced;
+
+		Entry(Object key, int hash, Object value, Entry next, int slot) {
+			this.key = key;
+			this.hash = hash;
+			this.value = value;
+			this.next = next;
+			this.slot = slot;
+		}
+	}
+
+	private final boolean rstring;
+	private final boolean adaptive;
+	/**
+	 * Hash chains, entries are immutable apart from their reference bit
+	 * and chains are replaced rather than modified, so lookups see either
+	 * the old or the new chain.
+	 */
+	private final Entry[] buckets;
+	private final int mask;
+	/** Entries in the order their slots were filled, scanned by the clock hand. */
+	private final Entry[] clock;
+	private int size;
+	private int hand;
+
+	/* Hit rate sampling for an adaptive cache, races lose counts which is harmless. */
+	private int lookups;
+	private int misses;
+	private volatile boolean disabled;
+
+	/**
+	 * Create a cache.
+	 * @param capacity Maximum number of values held.
+	 * @param rstring True to cache {@code RString} values, false for {@code String}.
+	 * @param adaptive True to stop caching if values rarely repeat.
+	 */
+	StringCache(int capacity, boolean rstring, boolean adaptive) {
+		this.rstring = rstring;
+		this.adaptive = adaptive;
+		int buckets = 4;
+		while (buckets < capacity * 2)
+			buckets <<= 1;
+		this.buckets = new Entry[buckets];
+		this.mask = buckets - 1;
+		this.clock = new Entry[capacity];
+	}
+
+	/**
+	 * True if the values are {@code RString}, otherwise {@code String}.
+	 */
+	boolean isRString() {
+		return rstring;
+	}
+
+	/**
+	 * Get the value of the JSON string with UTF-8 encoding {@code buf[off..off+len)},
+	 * which has no escape sequences.
+	 */
+	Object get(byte[] buf, int off, int len) {
+		if (disabled)
+			return rstring ? new RString(copy(buf, off, len)) : new String(buf, off, len, JSONWriter.UTF8);
+		final int hash = NameTable.hash(buf, off, len);
+		for (Entry e = buckets[hash & mask]; e != null; e = e.next) {
+			if (e.hash == hash && e.key instanceof byte[] && regionMatches((byte[]) e.key, buf, off, len)) {
+				hit(e);
+				return e.value;
+			}
+		}
+		final byte[] key = copy(buf, off, len);
+		return add(key, hash, rstring ? new RString(key) : new String(key, JSONWriter.UTF8));
+	}
+
+	/**
+	 * Get the value of the JSON string with characters {@code buf[off..off+len)},
+	 * which has no escape sequences.
+	 */
+	Object get(char[] buf, int off, int len) {
+		if (disabled)
+			return value(new String(buf, off, len));
+		int hash = 0;
+		for (int i = off; i < off + len; i++)
+			hash = 31 * hash + buf[i];
+		for (Entry e = buckets[hash & mask]; e != null; e = e.next) {
+			if (e.hash == hash && e.key instanceof char[] && regionMatches((char[]) e.key, buf, off, len)) {
+				hit(e);
+				return e.value;
+			}
+		}
+		final char[] key = new char[len];
+		System.arraycopy(buf, off, key, 0, len);
+		return add(key, hash, value(new String(key)));
+	}
+
+	/**
+	 * Convert a string that is not cached to the type of the values.
+	 */
+	Object value(String s) {
+		return rstring ? new RString(s) : s;
+	}
+
+	private void hit(Entry e) {
+		if (!e.referenced)
+			e.referenced = true;
+		if (adaptive)
+			lookups++;
+	}
+
+	private synchronized Object add(Object key, int hash, Object value) {
+		if (adaptive && sampleMiss())
+			return value;
+		final int bucket = hash & mask;
+		int slot;
+		if (size < clock.length) {
+			slot = size++;
+		} else {
+			// CLOCK: evict the first entry not referenced since the hand last passed it
+			Entry victim;
+			while ((victim = clock[hand]).referenced) {
+				victim.referenced = false;
+				hand = (hand + 1) % clock.length;
+			}
+			slot = hand;
+			hand = (hand + 1) % clock.length;
+			remove(victim);
+		}
+		final Entry e = new Entry(key, hash, value, buckets[bucket], slot);
+		clock[slot] = e;
+		buckets[bucket] = e;
+		return value;
+	}
+
+	/**
+	 * Record a miss, disabling the cache when most lookups of the sample missed.
+	 * @return True if the cache was disabled.
+	 */
+	private boolean sampleMiss() {
+		misses++;
+		if (++lookups < SAMPLE_SIZE)
+			return false;
+		if (misses > lookups / 2)
+			disabled = true;
+		lookups = 0;
+		misses = 0;
+		return disabled;
+	}
+
+	/**
+	 * Remove an entry by replacing the part of its chain that precedes it.
+	 */
+	private void remove(Entry victim) {
+		final int bucket = victim.hash & mask;
+		Entry chain = victim.next;
+		for (Entry e = buckets[bucket]; e != victim; e = e.next) {
+			Entry copy = new Entry(e.key, e.hash, e.value, chain, e.slot);
+			copy.referenced = e.referenced;
+			clock[e.slot] = copy;
+			chain = copy;
+		}
+		buckets[bucket] = chain;
+	}
+
+	private static byte[] copy(byte[] buf, int off, int len) {
+		final byte[] b = new byte[len];
+		System.arraycopy(buf, off, b, 0, len);
+		return b;
+	}
+
+	private static boolean regionMatches(byte[] key, byte[] buf, int off, int len) {
+		if (key.length != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (key[i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean regionMatches(char[] key, char[] buf, int off, int len) {
+		if (key.length != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (key[i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+}
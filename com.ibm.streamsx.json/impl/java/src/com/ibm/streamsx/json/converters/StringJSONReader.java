@@ -0,0 +1,501 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import com.ibm.streams.operator.Type.MetaType;
+
+/**
+ * {@link JSONReader} over JSON text held in a Java String.
+ * The characters are copied into a buffer that is reused
+ * across calls to {@link #reset(String)}.
+ */
+public final class StringJSONReader extends JSONReader {
+
+	private char[] buf = new char[256];
+	private int pos;
+	private int end;
+	private final NumberParser numbers = new NumberParser();
+	private final StringBuilder sb = new StringBuilder();
+
+	public StringJSONReader() {
+	}
+
+	public StringJSONReader(String json) {
+		reset(json);
+	}
+
+	/**
+	 * Reset this reader to read {@code json}.
+	 */
+	public void reset(String json) {
+		int len = json.length();
+		if (buf.length < len)
+			buf = new char[Math.max(len, buf.length * 2)];
+		json.getChars(0, len, buf, 0);
+		pos = 0;
+		end = len;
+		first = false;
+		skippedMembers = 0;
+	}
+
+	@Override
+	public int getPosition() {
+		return pos;
+	}
+
+	private int skipWhitespace() {
+		while (pos < end) {
+			char c = buf[pos];
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				pos++;
+			else
+				return c;
+		}
+		return -1;
+	}
+
+	@Override
+	public int peek() throws IOException {
+		int c = skipWhitespace();
+		switch (c) {
+		case -1:
+			return END;
+		case '{':
+			return OBJECT;
+		case '[':
+			return ARRAY;
+		case '"':
+			return STRING;
+		case 't':
+		case 'f':
+			return BOOLEAN;
+		case 'n':
+			return NULL;
+		case '-':
+		case '0': case '1': case '2': case '3': case '4':
+		case '5': case '6': case '7': case '8': case '9':
+			return NUMBER;
+		default:
+			throw syntaxError("unexpected character '" + (char) c + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		if (skipWhitespace() != '{')
+			throw syntaxError("expected '{'"); //$NON-NLS-1$
+		pos++;
+		first = true;
+	}
+
+	@Override
+	public boolean hasNextMember() throws IOException {
+		return hasNext('}');
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		if (skipWhitespace() != '[')
+			throw syntaxError("expected '['"); //$NON-NLS-1$
+		pos++;
+		first = true;
+	}
+
+	@Override
+	public boolean hasNextElement() throws IOException {
+		return hasNext(']');
+	}
+
+	private boolean hasNext(char close) throws IOException {
+		int c = skipWhitespace();
+		if (c == close) {
+			pos++;
+			first = false;
+			return false;
+		}
+		if (first) {
+			first = false;
+			return true;
+		}
+		if (c != ',')
+			throw syntaxError("expected ',' or '" + close + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		pos++;
+		return true;
+	}
+
+	private void nameSeparator() throws IOException {
+		if (skipWhitespace() != ':')
+			throw syntaxError("expected ':'"); //$NON-NLS-1$
+		pos++;
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		if (skipWhitespace() != '"')
+			throw syntaxError("expected member name"); //$NON-NLS-1$
+		String name = readString();
+		nameSeparator();
+		return name;
+	}
+
+	@Override
+	int nextName(NameTable names) throws IOException {
+		if (skipWhitespace() != '"')
+			throw syntaxError("expected member name"); //$NON-NLS-1$
+		final int start = pos + 1;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			char c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				nameSeparator();
+				return names.find(buf, start, i - start, hash);
+			}
+			if (c == '\\') {
+				// escaped names are rare, match them using the decoded String
+				return names.find(nextName());
+			}
+			hash = 31 * hash + c;
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Read a string value, the reader is positioned at its opening quote.
+	 */
+	private String readString() throws IOException {
+		final int start = pos + 1;
+		for (int i = start; i < end; i++) {
+			char c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				return new String(buf, start, i - start);
+			}
+			if (c == '\\')
+				return readEscapedString(start, i);
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	private String readEscapedString(int start, int i) throws IOException {
+		final StringBuilder sb = this.sb;
+		sb.setLength(0);
+		sb.append(buf, start, i - start);
+		while (i < end) {
+			char c = buf[i++];
+			if (c == '"') {
+				pos = i;
+				return sb.toString();
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (i == end)
+				break;
+			c = buf[i++];
+			switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				sb.append(c);
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				pos = i;
+				sb.append(readHex4());
+				i += 4;
+				break;
+			default:
+				pos = i - 1;
+				throw syntaxError("invalid escape sequence"); //$NON-NLS-1$
+			}
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	private char readHex4() throws IOException {
+		if (pos + 4 > end)
+			throw syntaxError("invalid unicode escape"); //$NON-NLS-1$
+		int v = 0;
+		for (int i = pos; i < pos + 4; i++) {
+			int d = Character.digit(buf[i], 16);
+			if (d < 0)
+				throw syntaxError("invalid unicode escape"); //$NON-NLS-1$
+			v = (v << 4) | d;
+		}
+		return (char) v;
+	}
+
+	private void skipString() throws IOException {
+		for (int i = pos + 1; i < end; i++) {
+			char c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				return;
+			}
+			if (c == '\\')
+				i++;
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Scan the number starting at the current position.
+	 * @return Offset of the first character after the number.
+	 */
+	private int scanNumber() throws IOException {
+		int i = pos;
+		if (i < end && buf[i] == '-')
+			i++;
+		int digits = i;
+		while (i < end && isDigit(buf[i]))
+			i++;
+		if (i == digits)
+			throw syntaxError("invalid number"); //$NON-NLS-1$
+		if (i < end && buf[i] == '.') {
+			digits = ++i;
+			while (i < end && isDigit(buf[i]))
+				i++;
+			if (i == digits)
+				throw syntaxError("invalid number"); //$NON-NLS-1$
+		}
+		if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+			i++;
+			if (i < end && (buf[i] == '+' || buf[i] == '-'))
+				i++;
+			digits = i;
+			while (i < end && isDigit(buf[i]))
+				i++;
+			if (i == digits)
+				throw syntaxError("invalid number"); //$NON-NLS-1$
+		}
+		return i;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Consume the number at the current position and scan its digits.
+	 */
+	private NumberParser readNumber() throws IOException {
+		int start = pos;
+		pos = scanNumber();
+		return numbers.scan(buf, start, pos);
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		int len = literal.length();
+		if (pos + len > end)
+			throw syntaxError("expected '" + literal + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		for (int i = 0; i < len; i++) {
+			if (buf[pos + i] != literal.charAt(i))
+				throw syntaxError("expected '" + literal + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		pos += len;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		switch (peek()) {
+		case STRING:
+			return readString();
+		case NUMBER:
+		{
+			NumberParser number = readNumber();
+			return number.isIntegral() ? number.text() : Double.toString(number.doubleValue());
+		}
+		case BOOLEAN:
+			return nextBoolean() ? "true" : "false"; //$NON-NLS-1$ //$NON-NLS-2$
+		case NULL:
+			nextNull();
+			return null;
+		case OBJECT:
+		case ARRAY:
+		{
+			int start = pos;
+			skipValue();
+			return new String(buf, start, pos - start);
+		}
+		default:
+			throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	Object nextString(StringCache cache) throws IOException {
+		if (peek() != STRING)
+			return super.nextString(cache);
+		final int start = pos + 1;
+		for (int i = start; i < end; i++) {
+			char c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				return cache.get(buf, start, i - start);
+			}
+			if (c == '\\')
+				return cache.value(readEscapedString(start, i));
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	@Override
+	long nextLong(MetaType type) throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return longValue(readNumber(), type);
+		case STRING:
+			return parseLong(readString(), type);
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return readNumber().doubleValue();
+		case STRING:
+			return parseDouble(readString());
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public BigDecimal nextBigDecimal() throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return readNumber().decimalValue();
+		case STRING:
+			return parseBigDecimal(readString());
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		switch (peek()) {
+		case BOOLEAN:
+			if (buf[pos] == 't') {
+				readLiteral("true"); //$NON-NLS-1$
+				return true;
+			}
+			readLiteral("false"); //$NON-NLS-1$
+			return false;
+		case STRING:
+			return Boolean.parseBoolean(readString());
+		default:
+			skipValue();
+			return false;
+		}
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		skipWhitespace();
+		readLiteral("null"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		switch (peek()) {
+		case OBJECT:
+		case ARRAY:
+			pos++;
+			skipNested();
+			break;
+		case STRING:
+			skipString();
+			break;
+		case NUMBER:
+			pos = scanNumber();
+			break;
+		case BOOLEAN:
+			nextBoolean();
+			break;
+		case NULL:
+			nextNull();
+			break;
+		default:
+			throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	void skipToEnd() throws IOException {
+		skipNested();
+	}
+
+	/**
+	 * Skip to the end of the object or array containing the current position
+	 * by scanning for brackets and strings without reading the values.
+	 */
+	private void skipNested() throws IOException {
+		final char[] buf = this.buf;
+		final int end = this.end;
+		int depth = 1;
+		for (int i = pos; i < end; i++) {
+			switch (buf[i]) {
+			case '"':
+				for (i++; i < end && buf[i] != '"'; i++) {
+					if (buf[i] == '\\')
+						i++;
+				}
+				break;
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+			case ']':
+				if (--depth == 0) {
+					pos = i + 1;
+					first = false;
+					return;
+				}
+				break;
+			}
+		}
+		pos = end;
+		throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void endDocument() throws IOException {
+		if (skipWhitespace() != -1)
+			throw syntaxError("unexpected content after JSON value"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void skipLine() {
+		while (pos < end) {
+			if (buf[pos++] == '\n')
+				break;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ibm.streams.operator.Attribute;
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type.MetaType;
+
+/**
+ * Decodes JSON objects into SPL tuples of a fixed schema.
+ * <p>
+ * The decoder is compiled once from the schema: the JSON key of each
+ * member is matched against the attribute names without creating a
+ * String, the value is converted by a decoder specific to the attribute's
+ * type and written directly into the tuple by attribute index.
+ * Members that do not match an attribute, or match an attribute
+ * of a type that is not supported, are skipped by scanning over them
+ * without reading their values.
+ * No intermediate {@code JSONObject} or {@code Map} is created.
+ * <p>
+ * Once a member has been read for every attribute the remainder of the
+ * object is skipped, so a duplicate key after that point is ignored.
+ * <p>
+ * As with {@link JSONToTupleConverter#jsonToTuple(com.ibm.json.java.JSONObject, StreamSchema)}
+ * the SPL schema must contain attribute names that match the JSON key names,
+ * attributes that are not present in the JSON object or have a {@code null}
+ * value are not modified.
+ * <p>
+ * Alternatively attributes can be mapped to JSON paths such as {@code $.a.b[0].c},
+ * populating attributes from values nested anywhere in the JSON in a single pass
+ * without creating tuples for the intermediate objects.
+ * <p>
+ * A {@code TupleDecoder} holds no per-conversion state and can be
+ * shared by multiple threads, each using its own {@link JSONReader}.
+ * {@link #forSchema(StreamSchema)} returns the decoder shared by all
+ * users of a schema within the JVM that match attributes by name
+ * without caching string values.
+ */
+public final class TupleDecoder {
+
+	/**
+	 * Decoders that match attributes by name, built once per schema.
+	 */
+	private static final ConcurrentMap<StreamSchema, TupleDecoder> shared = new ConcurrentHashMap<StreamSchema, TupleDecoder>();
+
+	private final StreamSchema schema;
+	private final NameTable names;
+	private final ValueDecoder[] decoders;
+	private final Object[] defaults;
+	/**
+	 * Number of attributes that are read from the JSON, used to stop reading
+	 * an object once they are all present. Zero if the schema has more than
+	 * 64 attributes as the attributes present are tracked in a bit mask.
+	 */
+	private final int required;
+	/** Tree of JSON paths to read, null when attributes are matched by name. */
+	private final PathNode paths;
+
+	/**
+	 * Create a decoder for {@code schema}.
+	 * @param schema Schema of the SPL tuples produced by this decoder.
+	 */
+	public TupleDecoder(StreamSchema schema) {
+		this(schema, Collections.<String,String>emptyMap());
+	}
+
+	/**
+	 * Get the shared decoder for {@code schema} that matches attributes
+	 * by name, creating it on first use.
+	 * @param schema Schema of the SPL tuples produced by the decoder.
+	 */
+	public static TupleDecoder forSchema(StreamSchema schema) {
+		TupleDecoder decoder = shared.get(schema);
+		if (decoder == null) {
+			decoder = new TupleDecoder(schema);
+			TupleDecoder existing = shared.putIfAbsent(schema, decoder);
+			if (existing != null)
+				decoder = existing;
+		}
+		return decoder;
+	}
+
+	/**
+	 * Create a decoder for {@code schema} that reads attributes from JSON paths.
+	 * <p>
+	 * A path starts with {@code $} for the JSON value being decoded, followed by
+	 * any number of {@code .name} or {@code ['name']} to select a member of an
+	 * object and {@code [n]} to select an element of an array.
+	 * Attributes without a path are read from the member of the JSON object with
+	 * the same name, unless that member is on the path of another attribute.
+	 *
+	 * @param schema Schema of the SPL tuples produced by this decoder.
+	 * @param paths JSON path of attributes, keyed by attribute name.
+	 * @throws IllegalArgumentException If a path is not valid, or is on the path of another attribute.
+	 */
+	public TupleDecoder(StreamSchema schema, Map<String, String> paths) {
+		this(schema, paths, Collections.<String>emptySet(), 0, false);
+	}
+
+	/**
+	 * Create a decoder for {@code schema} that reads attributes from JSON paths
+	 * and caches the values of string attributes.
+	 * <p>
+	 * A cached {@code rstring} or {@code ustring} attribute holds up to {@code cacheSize}
+	 * distinct values, a JSON string that is in the cache is returned as the same
+	 * {@code RString} or {@code String} instance without decoding or copying it.
+	 * This suits attributes with few distinct values, such as enumerations.
+	 *
+	 * @param schema Schema of the SPL tuples produced by this decoder.
+	 * @param paths JSON path of attributes, keyed by attribute name.
+	 * @param cachedAttributes Names of string attributes whose values are cached,
+	 * names of attributes of other types are ignored.
+	 * @param cacheSize Maximum number of values cached for each attribute.
+	 * @param autoCache True to cache the values of all other string attributes
+	 * until the values of an attribute are seen to rarely repeat.
+	 * @throws IllegalArgumentException If a path is not valid, or is on the path of another attribute.
+	 * @see #TupleDecoder(StreamSchema, Map)
+	 */
+	public TupleDecoder(StreamSchema schema, Map<String, String> paths,
+			Collection<String> cachedAttributes, int cacheSize, boolean autoCache) {
+		this.schema = schema;
+		final int count = schema.getAttributeCount();
+		String[] attrNames = new String[count];
+		decoders = new ValueDecoder[count];
+		int required = 0;
+		for (int i = 0; i < count; i++) {
+			Attribute attr = schema.getAttribute(i);
+			final MetaType type = attr.getType().getMetaType();
+			final boolean cached = cachedAttributes.contains(attr.getName());
+			if ((cached || autoCache) && (type == MetaType.RSTRING || type == MetaType.USTRING))
+				decoders[i] = ValueDecoder.cached(new StringCache(cacheSize, type == MetaType.RSTRING, !cached));
+			else
+				decoders[i] = ValueDecoder.forType(attr.getName(), attr.getType(), null);
+			if (decoders[i] != ValueDecoder.IGNORE) {
+				attrNames[i] = attr.getName();
+				required++;
+			}
+		}
+		names = new NameTable(attrNames);
+		this.required = count <= 64 ? required : 0;
+		this.paths = paths.isEmpty() ? null : PathNode.compile(attrNames, paths);
+
+		Tuple defaultTuple = schema.getTuple();
+		defaults = new Object[count];
+		for (int i = 0; i < count; i++)
+			defaults[i] = defaultTuple.getObject(i);
+	}
+
+	/**
+	 * Get the schema of the tuples produced by this decoder.
+	 */
+	public StreamSchema getStreamSchema() {
+		return schema;
+	}
+
+	/**
+	 * Names of the attributes matched by name, the value of a name is its attribute index.
+	 */
+	NameTable getNames() {
+		return names;
+	}
+
+	/**
+	 * Decoder of the value of an attribute.
+	 */
+	ValueDecoder getDecoder(int index) {
+		return decoders[index];
+	}
+
+	/**
+	 * Default value of an attribute.
+	 */
+	Object getDefault(int index) {
+		return defaults[index];
+	}
+
+	/**
+	 * Decode the next JSON object from {@code reader} into {@code tuple}.
+	 * Only attributes with a matching member in the JSON object are set.
+	 *
+	 * @param reader Reader positioned before a JSON object.
+	 * @param tuple Tuple to populate, its schema must be the schema of this decoder.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public void decode(JSONReader reader, OutputTuple tuple) throws IOException {
+		if (paths != null) {
+			final Object[] values = new Object[decoders.length];
+			paths.readValue(reader, decoders, values);
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null)
+					tuple.setObject(i, values[i]);
+			}
+			return;
+		}
+		long present = 0;
+		int remaining = required;
+		reader.beginObject();
+		while (reader.hasNextMember()) {
+			final int index = reader.nextName(names);
+			if (index < 0) {
+				reader.skippedMembers++;
+				reader.skipValue();
+				continue;
+			}
+			decoders[index].decode(reader, tuple, index);
+			if (remaining != 0 && (present & (1L << index)) == 0) {
+				present |= 1L << index;
+				if (--remaining == 0) {
+					reader.skipToEnd();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decode the next JSON object from {@code reader} into a new tuple.
+	 * Attributes without a matching member in the JSON object have their default value.
+	 *
+	 * @param reader Reader positioned before a JSON object.
+	 * @return Tuple with the schema of this decoder.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public Tuple decodeTuple(JSONReader reader) throws IOException {
+		final Object[] values = defaults.clone();
+		if (paths != null) {
+			paths.readValue(reader, decoders, values);
+			return schema.getTuple(values);
+		}
+		long present = 0;
+		int remaining = required;
+		reader.beginObject();
+		while (reader.hasNextMember()) {
+			final int index = reader.nextName(names);
+			if (index < 0) {
+				reader.skippedMembers++;
+				reader.skipValue();
+				continue;
+			}
+			Object value = decoders[index].decode(reader);
+			if (value != null)
+				values[index] = value;
+			if (remaining != 0 && (present & (1L << index)) == 0) {
+				present |= 1L << index;
+				if (--remaining == 0) {
+					reader.skipToEnd();
+					break;
+				}
+			}
+		}
+		return schema.getTuple(values);
+	}
+}
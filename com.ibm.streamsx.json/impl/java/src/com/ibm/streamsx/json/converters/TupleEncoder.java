@@ -0,0 +1,129 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ibm.streams.operator.Attribute;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * Encodes SPL tuples of a fixed schema as JSON objects.
+ * <p>
+ * The encoder is built once from the schema. Attributes are written
+ * by index using pre-encoded {@code "name":} prefixes, values are
+ * written as UTF-8 directly into a {@link JSONWriter} without
+ * building an intermediate JSON object tree or String.
+ * The JSON produced is the standard SPL JSON encoding
+ * as used by {@link TupleToJSONConverter}.
+ * <p>
+ * A {@code TupleEncoder} holds no per-conversion state and can be
+ * shared by multiple threads, each using its own {@link JSONWriter}.
+ * {@link #forSchema(StreamSchema)} returns the encoder shared by all
+ * users of a schema within the JVM, so operators in the same PE with
+ * the same input schema build its encoder once.
+ */
+public final class TupleEncoder {
+
+	/**
+	 * Encoders built once per schema.
+	 */
+	private static final ConcurrentMap<StreamSchema, TupleEncoder> shared = new ConcurrentHashMap<StreamSchema, TupleEncoder>();
+
+	private final StreamSchema schema;
+	/** Member name prefixes, {@code "name":} for the first attribute and {@code ,"name":} for the others. */
+	private final byte[][] prefixes;
+	private final ValueEncoder[] encoders;
+	private final boolean direct;
+
+	/**
+	 * Create an encoder for {@code schema}.
+	 * @param schema Schema of the tuples to be encoded.
+	 */
+	public TupleEncoder(StreamSchema schema) {
+		this.schema = schema;
+		final int count = schema.getAttributeCount();
+		prefixes = new byte[count][];
+		encoders = new ValueEncoder[count];
+		boolean direct = true;
+		for (int i = 0; i < count; i++) {
+			Attribute attr = schema.getAttribute(i);
+			prefixes[i] = prefix(attr.getName(), i == 0);
+			ValueEncoder encoder = ValueEncoder.forType(attr.getType());
+			if (encoder == null) {
+				encoder = new ValueEncoder.StandardEncoder(attr.getName());
+				direct = false;
+			}
+			encoders[i] = encoder;
+		}
+		this.direct = direct;
+	}
+
+	/**
+	 * Get the shared encoder for {@code schema}, creating it on first use.
+	 * @param schema Schema of the tuples to be encoded.
+	 */
+	public static TupleEncoder forSchema(StreamSchema schema) {
+		TupleEncoder encoder = shared.get(schema);
+		if (encoder == null) {
+			encoder = new TupleEncoder(schema);
+			TupleEncoder existing = shared.putIfAbsent(schema, encoder);
+			if (existing != null)
+				encoder = existing;
+		}
+		return encoder;
+	}
+
+	private static byte[] prefix(String name, boolean first) {
+		byte[] member = JSONWriter.memberName(name);
+		if (first)
+			return member;
+		byte[] prefix = new byte[member.length + 1];
+		prefix[0] = ',';
+		System.arraycopy(member, 0, prefix, 1, member.length);
+		return prefix;
+	}
+
+	/**
+	 * Get the schema of the tuples encoded by this encoder.
+	 */
+	public StreamSchema getStreamSchema() {
+		return schema;
+	}
+
+	/**
+	 * True if every attribute is encoded directly, without
+	 * using the standard SPL JSON encoding.
+	 */
+	boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Write {@code tuple} as a JSON object.
+	 * @param tuple Tuple to be encoded, its schema must be the schema of this encoder.
+	 * @param writer Writer the JSON is written to.
+	 * @throws IOException If there was a problem converting the tuple.
+	 */
+	public void encode(Tuple tuple, JSONWriter writer) throws IOException {
+		writer.write('{');
+		final ValueEncoder[] encoders = this.encoders;
+		for (int i = 0; i < encoders.length; i++) {
+			writer.writeRaw(prefixes[i]);
+			encoders[i].encode(tuple, i, writer);
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Write the value of a single attribute of {@code tuple} as JSON.
+	 * @param tuple Tuple containing the attribute, its schema must be the schema of this encoder.
+	 * @param index Index of the attribute.
+	 * @param writer Writer the JSON is written to.
+	 * @throws IOException If there was a problem converting the attribute.
+	 */
+	public void encodeAttribute(Tuple tuple, int index, JSONWriter writer) throws IOException {
+		encoders[index].encode(tuple, index, writer);
+	}
+}
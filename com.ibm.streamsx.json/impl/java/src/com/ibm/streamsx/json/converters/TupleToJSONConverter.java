@@ -2,17 +2,20 @@ package com.ibm.streamsx.json.converters;
 
 import java.io.IOException;
 
-import com.ibm.json.java.JSONArray;
-import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.StreamSchema;
 import com.ibm.streams.operator.Tuple;
-import com.ibm.streams.operator.encoding.EncodingFactory;
-import com.ibm.streams.operator.encoding.JSONEncoding;
 
 /**
  * Converts SPL tuples and SPL tuple attributes to String representations of JSON values.  
  */
 public class TupleToJSONConverter { 
 
+	private static final ThreadLocal<JSONWriter> writers = new ThreadLocal<JSONWriter>() {
+		@Override
+		protected JSONWriter initialValue() {
+			return new JSONWriter();
+		}
+	};
 
 	/**
 	 * Converts an SPL tuple to a String representation of a JSONObject 
@@ -21,8 +24,23 @@ public class TupleToJSONConverter {
 	 * @throws IOException If there was a problem converting the SPL tuple
 	 */
 	public static String convertTuple(Tuple tuple) throws IOException  {	
-		JSONEncoding<JSONObject, JSONArray> je = EncodingFactory.getJSONEncoding();
-		return je.encodeAsString(tuple);
+		JSONWriter writer = writers.get();
+		writer.reset();
+		TupleEncoder.forSchema(tuple.getStreamSchema()).encode(tuple, writer);
+		return writer.toString();
+	}
+	
+	/**
+	 * Converts an SPL tuple to the UTF-8 encoding of a JSONObject, without creating a String.
+	 * @param tuple Tuple to be converted
+	 * @return UTF-8 bytes of the JSONObject
+	 * @throws IOException If there was a problem converting the SPL tuple
+	 */
+	public static byte[] convertTupleToUTF8(Tuple tuple) throws IOException  {	
+		JSONWriter writer = writers.get();
+		writer.reset();
+		TupleEncoder.forSchema(tuple.getStreamSchema()).encode(tuple, writer);
+		return writer.toByteArray();
 	}
 	
 	/**
@@ -33,8 +51,11 @@ public class TupleToJSONConverter {
 	 * @throws IOException If there was a problem converting the SPL tuple attribute
 	 */
 	public static String convertArray(Tuple tuple, String attrName) throws IOException  {	
-		JSONEncoding<JSONObject, JSONArray> je = EncodingFactory.getJSONEncoding();
-		return ((JSONArray)je.getAttributeObject(tuple, attrName)).serialize();
+		StreamSchema schema = tuple.getStreamSchema();
+		JSONWriter writer = writers.get();
+		writer.reset();
+		TupleEncoder.forSchema(schema).encodeAttribute(tuple, schema.getAttributeIndex(attrName), writer);
+		return writer.toString();
 	}
 	
 }
@@ -0,0 +1,582 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * {@link JSONReader} over JSON text encoded as UTF-8 bytes, such as the
+ * contents of an {@code rstring} or {@code blob}.
+ * <p>
+ * The input is parsed without decoding it to Java characters.
+ * Member names are matched as bytes, {@code rstring} values
+ * are sliced out of the input as byte ranges and only values
+ * read with {@link #nextString()} are decoded.
+ * The input array is not copied and must not be modified while it is read.
+ */
+public final class UTF8JSONReader extends JSONReader {
+
+	static final Charset LATIN1 = Charset.forName("ISO-8859-1"); //$NON-NLS-1$
+
+	private byte[] buf;
+	private int pos;
+	private int end;
+	private final NumberParser numbers = new NumberParser();
+	/** Holds the unescaped bytes of strings containing escape sequences. */
+	private byte[] scratch = new byte[64];
+	private int scratchLength;
+
+	public UTF8JSONReader() {
+	}
+
+	public UTF8JSONReader(byte[] json) {
+		reset(json, 0, json.length);
+	}
+
+	/**
+	 * Reset this reader to read {@code json[off..off+len)}.
+	 */
+	public void reset(byte[] json, int off, int len) {
+		buf = json;
+		pos = off;
+		end = off + len;
+		first = false;
+		skippedMembers = 0;
+	}
+
+	@Override
+	public int getPosition() {
+		return pos;
+	}
+
+	private int skipWhitespace() {
+		while (pos < end) {
+			int c = buf[pos] & 0xff;
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				pos++;
+			else
+				return c;
+		}
+		return -1;
+	}
+
+	@Override
+	public int peek() throws IOException {
+		int c = skipWhitespace();
+		switch (c) {
+		case -1:
+			return END;
+		case '{':
+			return OBJECT;
+		case '[':
+			return ARRAY;
+		case '"':
+			return STRING;
+		case 't':
+		case 'f':
+			return BOOLEAN;
+		case 'n':
+			return NULL;
+		case '-':
+		case '0': case '1': case '2': case '3': case '4':
+		case '5': case '6': case '7': case '8': case '9':
+			return NUMBER;
+		default:
+			throw syntaxError("unexpected character '" + (char) (c & 0xff) + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		if (skipWhitespace() != '{')
+			throw syntaxError("expected '{'"); //$NON-NLS-1$
+		pos++;
+		first = true;
+	}
+
+	@Override
+	public boolean hasNextMember() throws IOException {
+		return hasNext('}');
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		if (skipWhitespace() != '[')
+			throw syntaxError("expected '['"); //$NON-NLS-1$
+		pos++;
+		first = true;
+	}
+
+	@Override
+	public boolean hasNextElement() throws IOException {
+		return hasNext(']');
+	}
+
+	private boolean hasNext(char close) throws IOException {
+		int c = skipWhitespace();
+		if (c == close) {
+			pos++;
+			first = false;
+			return false;
+		}
+		if (first) {
+			first = false;
+			return true;
+		}
+		if (c != ',')
+			throw syntaxError("expected ',' or '" + close + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		pos++;
+		return true;
+	}
+
+	private void nameSeparator() throws IOException {
+		if (skipWhitespace() != ':')
+			throw syntaxError("expected ':'"); //$NON-NLS-1$
+		pos++;
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		if (skipWhitespace() != '"')
+			throw syntaxError("expected member name"); //$NON-NLS-1$
+		String name = readString();
+		nameSeparator();
+		return name;
+	}
+
+	@Override
+	int nextName(NameTable names) throws IOException {
+		if (skipWhitespace() != '"')
+			throw syntaxError("expected member name"); //$NON-NLS-1$
+		final int start = pos + 1;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			byte c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				nameSeparator();
+				return names.find(buf, start, i - start, hash);
+			}
+			if (c == '\\') {
+				// escaped names are rare, match them using the decoded String
+				return names.find(nextName());
+			}
+			hash = 31 * hash + (c & 0xff);
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Scan a string value, the reader is positioned at its opening quote.
+	 * @return Offset of the closing quote if the string contains no escape
+	 * sequences, otherwise -1 and the unescaped bytes are in {@code scratch}.
+	 */
+	private int scanString() throws IOException {
+		final int start = pos + 1;
+		for (int i = start; i < end; i++) {
+			byte c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				return i;
+			}
+			if (c == '\\') {
+				unescape(start, i);
+				return -1;
+			}
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	private void unescape(int start, int i) throws IOException {
+		scratchLength = 0;
+		append(buf, start, i - start);
+		while (i < end) {
+			byte c = buf[i++];
+			if (c == '"') {
+				pos = i;
+				return;
+			}
+			if (c != '\\') {
+				append(c);
+				continue;
+			}
+			if (i == end)
+				break;
+			c = buf[i++];
+			switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				append(c);
+				break;
+			case 'b':
+				append((byte) '\b');
+				break;
+			case 'f':
+				append((byte) '\f');
+				break;
+			case 'n':
+				append((byte) '\n');
+				break;
+			case 'r':
+				append((byte) '\r');
+				break;
+			case 't':
+				append((byte) '\t');
+				break;
+			case 'u':
+			{
+				pos = i;
+				int cp = readHex4();
+				i += 4;
+				if (Character.isHighSurrogate((char) cp) && i + 6 <= end && buf[i] == '\\' && buf[i + 1] == 'u') {
+					pos = i + 2;
+					int low = readHex4();
+					if (Character.isLowSurrogate((char) low)) {
+						cp = Character.toCodePoint((char) cp, (char) low);
+						i += 6;
+					}
+				}
+				appendCodePoint(cp);
+				break;
+			}
+			default:
+				pos = i - 1;
+				throw syntaxError("invalid escape sequence"); //$NON-NLS-1$
+			}
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	private void append(byte b) {
+		if (scratchLength == scratch.length)
+			scratch = Arrays.copyOf(scratch, scratch.length * 2);
+		scratch[scratchLength++] = b;
+	}
+
+	private void append(byte[] b, int off, int len) {
+		if (scratchLength + len > scratch.length)
+			scratch = Arrays.copyOf(scratch, Math.max(scratchLength + len, scratch.length * 2));
+		System.arraycopy(b, off, scratch, scratchLength, len);
+		scratchLength += len;
+	}
+
+	private void appendCodePoint(int cp) {
+		if (cp < 0x80) {
+			append((byte) cp);
+		} else if (cp < 0x800) {
+			append((byte) (0xc0 | (cp >> 6)));
+			append((byte) (0x80 | (cp & 0x3f)));
+		} else if (cp < 0x10000) {
+			append((byte) (0xe0 | (cp >> 12)));
+			append((byte) (0x80 | ((cp >> 6) & 0x3f)));
+			append((byte) (0x80 | (cp & 0x3f)));
+		} else {
+			append((byte) (0xf0 | (cp >> 18)));
+			append((byte) (0x80 | ((cp >> 12) & 0x3f)));
+			append((byte) (0x80 | ((cp >> 6) & 0x3f)));
+			append((byte) (0x80 | (cp & 0x3f)));
+		}
+	}
+
+	private int readHex4() throws IOException {
+		if (pos + 4 > end)
+			throw syntaxError("invalid unicode escape"); //$NON-NLS-1$
+		int v = 0;
+		for (int i = pos; i < pos + 4; i++) {
+			int d = Character.digit(buf[i], 16);
+			if (d < 0)
+				throw syntaxError("invalid unicode escape"); //$NON-NLS-1$
+			v = (v << 4) | d;
+		}
+		return v;
+	}
+
+	/**
+	 * Read a string value, the reader is positioned at its opening quote.
+	 */
+	private String readString() throws IOException {
+		final int start = pos + 1;
+		final int close = scanString();
+		if (close != -1)
+			return new String(buf, start, close - start, JSONWriter.UTF8);
+		return new String(scratch, 0, scratchLength, JSONWriter.UTF8);
+	}
+
+	/**
+	 * Read a string value as an rstring, the bytes are copied
+	 * without decoding them.
+	 */
+	private RString readRString() throws IOException {
+		final int start = pos + 1;
+		final int close = scanString();
+		if (close != -1)
+			return new RString(Arrays.copyOfRange(buf, start, close));
+		return new RString(Arrays.copyOf(scratch, scratchLength));
+	}
+
+	private void skipString() throws IOException {
+		for (int i = pos + 1; i < end; i++) {
+			byte c = buf[i];
+			if (c == '"') {
+				pos = i + 1;
+				return;
+			}
+			if (c == '\\')
+				i++;
+		}
+		pos = end;
+		throw syntaxError("unterminated string"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Scan the number starting at the current position.
+	 * @return Offset of the first byte after the number.
+	 */
+	private int scanNumber() throws IOException {
+		int i = pos;
+		if (i < end && buf[i] == '-')
+			i++;
+		int digits = i;
+		while (i < end && isDigit(buf[i]))
+			i++;
+		if (i == digits)
+			throw syntaxError("invalid number"); //$NON-NLS-1$
+		if (i < end && buf[i] == '.') {
+			digits = ++i;
+			while (i < end && isDigit(buf[i]))
+				i++;
+			if (i == digits)
+				throw syntaxError("invalid number"); //$NON-NLS-1$
+		}
+		if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+			i++;
+			if (i < end && (buf[i] == '+' || buf[i] == '-'))
+				i++;
+			digits = i;
+			while (i < end && isDigit(buf[i]))
+				i++;
+			if (i == digits)
+				throw syntaxError("invalid number"); //$NON-NLS-1$
+		}
+		return i;
+	}
+
+	private static boolean isDigit(byte c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Consume the number at the current position and scan its digits.
+	 */
+	private NumberParser readNumber() throws IOException {
+		int start = pos;
+		pos = scanNumber();
+		return numbers.scan(buf, start, pos);
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		int len = literal.length();
+		if (pos + len > end)
+			throw syntaxError("expected '" + literal + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		for (int i = 0; i < len; i++) {
+			if (buf[pos + i] != literal.charAt(i))
+				throw syntaxError("expected '" + literal + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		pos += len;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		switch (peek()) {
+		case STRING:
+			return readString();
+		case NUMBER:
+		{
+			NumberParser number = readNumber();
+			return number.isIntegral() ? number.text() : Double.toString(number.doubleValue());
+		}
+		case BOOLEAN:
+			return nextBoolean() ? "true" : "false"; //$NON-NLS-1$ //$NON-NLS-2$
+		case NULL:
+			nextNull();
+			return null;
+		case OBJECT:
+		case ARRAY:
+		{
+			int start = pos;
+			skipValue();
+			return new String(buf, start, pos - start, JSONWriter.UTF8);
+		}
+		default:
+			throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Read the next value as an rstring. JSON strings without escape
+	 * sequences are copied from the input without decoding.
+	 */
+	@Override
+	public RString nextRString() throws IOException {
+		if (peek() == STRING)
+			return readRString();
+		return super.nextRString();
+	}
+
+	@Override
+	Object nextString(StringCache cache) throws IOException {
+		if (peek() != STRING)
+			return super.nextString(cache);
+		final int start = pos + 1;
+		final int close = scanString();
+		if (close != -1)
+			return cache.get(buf, start, close - start);
+		return cache.get(scratch, 0, scratchLength);
+	}
+
+	@Override
+	long nextLong(MetaType type) throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return longValue(readNumber(), type);
+		case STRING:
+			return parseLong(readString(), type);
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return readNumber().doubleValue();
+		case STRING:
+			return parseDouble(readString());
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public BigDecimal nextBigDecimal() throws IOException {
+		switch (peek()) {
+		case NUMBER:
+			return readNumber().decimalValue();
+		case STRING:
+			return parseBigDecimal(readString());
+		default:
+			throw syntaxError("expected a number"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		switch (peek()) {
+		case BOOLEAN:
+			if (buf[pos] == 't') {
+				readLiteral("true"); //$NON-NLS-1$
+				return true;
+			}
+			readLiteral("false"); //$NON-NLS-1$
+			return false;
+		case STRING:
+			return Boolean.parseBoolean(readString());
+		default:
+			skipValue();
+			return false;
+		}
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		skipWhitespace();
+		readLiteral("null"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		switch (peek()) {
+		case OBJECT:
+		case ARRAY:
+			pos++;
+			skipNested();
+			break;
+		case STRING:
+			skipString();
+			break;
+		case NUMBER:
+			pos = scanNumber();
+			break;
+		case BOOLEAN:
+			nextBoolean();
+			break;
+		case NULL:
+			nextNull();
+			break;
+		default:
+			throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	void skipToEnd() throws IOException {
+		skipNested();
+	}
+
+	/**
+	 * Skip to the end of the object or array containing the current position
+	 * by scanning for brackets and strings without reading the values.
+	 */
+	private void skipNested() throws IOException {
+		final byte[] buf = this.buf;
+		final int end = this.end;
+		int depth = 1;
+		for (int i = pos; i < end; i++) {
+			switch (buf[i]) {
+			case '"':
+				for (i++; i < end && buf[i] != '"'; i++) {
+					if (buf[i] == '\\')
+						i++;
+				}
+				break;
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+			case ']':
+				if (--depth == 0) {
+					pos = i + 1;
+					first = false;
+					return;
+				}
+				break;
+			}
+		}
+		pos = end;
+		throw syntaxError("unexpected end of input"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void endDocument() throws IOException {
+		if (skipWhitespace() != -1)
+			throw syntaxError("unexpected content after JSON value"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void skipLine() {
+		while (pos < end) {
+			if (buf[pos++] == '\n')
+				break;
+		}
+	}
+}
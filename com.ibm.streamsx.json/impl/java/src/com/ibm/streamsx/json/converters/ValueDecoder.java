@@ -0,0 +1,631 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.Type;
+import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.logging.LogLevel;
+import com.ibm.streams.operator.logging.TraceLevel;
+import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.MapType;
+import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.Timestamp;
+
+/**
+ * Decodes a JSON value read from a {@link JSONReader} into the
+ * SPL representation of a single type.
+ * <p>
+ * Decoders are created once for a type, the type specific
+ * conversion is chosen when the decoder is created rather than
+ * for every value. The values produced match those of
+ * {@link JSONToTupleConverter#jsonToAttribute(String, Type, Object, Type)}.
+ */
+public abstract class ValueDecoder {
+
+	private static Logger l = Logger.getLogger(ValueDecoder.class.getCanonicalName());
+
+	ValueDecoder() {
+	}
+
+	/**
+	 * Decode the next value from {@code reader}.
+	 * @param reader Reader positioned before the value.
+	 * @return Value converted to its SPL representation, or null if the JSON
+	 * value is {@code null} or the type is not supported.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public final Object decode(JSONReader reader) throws IOException {
+		if (reader.peek() == JSONReader.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return read(reader);
+	}
+
+	/**
+	 * Decode the next value from {@code reader} into attribute {@code index} of {@code tuple}.
+	 * Primitive values are set using the type specific setter without boxing them.
+	 * @param reader Reader positioned before the value.
+	 * @param tuple Tuple to populate.
+	 * @param index Index of the attribute, its type must be the type of this decoder.
+	 * The attribute is not modified if the JSON value is {@code null} or the type is not supported.
+	 * @throws IOException If there was a problem reading the JSON.
+	 */
+	public final void decode(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+		if (reader.peek() == JSONReader.NULL) {
+			reader.nextNull();
+			return;
+		}
+		read(reader, tuple, index);
+	}
+
+	/**
+	 * Read a non-null value.
+	 */
+	abstract Object read(JSONReader reader) throws IOException;
+
+	/**
+	 * Read a non-null value into an attribute.
+	 */
+	void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+		final Object value = read(reader);
+		if (value != null)
+			tuple.setObject(index, value);
+	}
+
+	/**
+	 * Create a decoder for an SPL type.
+	 *
+	 * @param name The name of the attribute being converted (used for logging purposes).
+	 * @param type SPL type the JSON value is converted to.
+	 * @param parentType Type of the collection containing the value, null if the value is not contained in a collection.
+	 * @return Decoder for {@code type}.
+	 */
+	public static ValueDecoder forType(String name, Type type, Type parentType) {
+		switch (type.getMetaType()) {
+		case BOOLEAN:
+			return BOOLEAN;
+		case INT8:
+			return INT8;
+		case UINT8:
+			return UINT8;
+		case INT16:
+			return INT16;
+		case UINT16:
+			return UINT16;
+		case INT32:
+			return INT32;
+		case UINT32:
+			return UINT32;
+		case INT64:
+			return INT64;
+		case UINT64:
+			return UINT64;
+		case FLOAT32:
+			return FLOAT32;
+		case FLOAT64:
+			return FLOAT64;
+		case DECIMAL32:
+		case DECIMAL64:
+		case DECIMAL128:
+			return DECIMAL;
+		case USTRING:
+			return USTRING;
+		case BSTRING:
+		case RSTRING:
+			return RSTRING;
+		case TIMESTAMP:
+			return TIMESTAMP;
+
+		case LIST:
+		case BLIST:
+		{
+			Type elementType = ((CollectionType) type).getElementType();
+			ValueDecoder element = forType(name, elementType, type);
+			//depending on the case, the java types for lists can be arrays or collections.
+			if (!elementType.getMetaType().isCollectionType() &&
+					(parentType == null || !parentType.getMetaType().isCollectionType())) {
+				return new ArrayDecoder(name, elementType.getMetaType(), element);
+			}
+			return new CollectionDecoder(element, false);
+		}
+
+		case SET:
+		case BSET:
+			return new CollectionDecoder(forType(name, ((CollectionType) type).getElementType(), type), true);
+
+		case TUPLE:
+			return new NestedTupleDecoder(TupleDecoder.forSchema(((TupleType) type).getTupleSchema()));
+
+		case MAP:
+		case BMAP:
+		{
+			MapType mapType = (MapType) type;
+			MetaType keyType = mapType.getKeyType().getMetaType();
+			if (isMapKeyType(keyType))
+				return new MapDecoder(keyType, forType(name, mapType.getValueType(), type));
+			if (l.isLoggable(TraceLevel.DEBUG))
+				l.log(TraceLevel.DEBUG, "Ignoring unsupported field: " + name + ", of type: " + type); //$NON-NLS-1$ //$NON-NLS-2$
+			return IGNORE;
+		}
+
+			//TODO -- not yet supported types
+		case BLOB:
+		case COMPLEX32:
+		case COMPLEX64:
+		default:
+			if (l.isLoggable(TraceLevel.DEBUG))
+				l.log(TraceLevel.DEBUG, "Ignoring unsupported field: " + name + ", of type: " + type); //$NON-NLS-1$ //$NON-NLS-2$
+			return IGNORE;
+		}
+	}
+
+	/**
+	 * True if JSON member names can be converted to map keys of {@code type}.
+	 */
+	static boolean isMapKeyType(MetaType type) {
+		switch (type) {
+		case BOOLEAN:
+		case INT8:
+		case UINT8:
+		case INT16:
+		case UINT16:
+		case INT32:
+		case UINT32:
+		case INT64:
+		case UINT64:
+		case FLOAT32:
+		case FLOAT64:
+		case USTRING:
+		case BSTRING:
+		case RSTRING:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Initial capacity of a {@code HashMap} that holds {@code size} entries without rehashing.
+	 */
+	static int mapCapacity(int size) {
+		return size < 3 ? size + 1 : (int) (size / 0.75f) + 1;
+	}
+
+	/**
+	 * Create a decoder for a {@code rstring} or {@code ustring} type
+	 * that returns shared values from {@code cache}.
+	 */
+	static ValueDecoder cached(final StringCache cache) {
+		return new ValueDecoder() {
+			Object read(JSONReader reader) throws IOException {
+				return reader.nextString(cache);
+			}
+		};
+	}
+
+	private static final ValueDecoder BOOLEAN = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextBoolean();
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setBoolean(index, reader.nextBoolean());
+		}
+	};
+
+	private static final ValueDecoder INT8 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (byte) reader.nextInteger(MetaType.INT8);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setByte(index, (byte) reader.nextInteger(MetaType.INT8));
+		}
+	};
+
+	private static final ValueDecoder UINT8 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (byte) reader.nextInteger(MetaType.UINT8);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setByte(index, (byte) reader.nextInteger(MetaType.UINT8));
+		}
+	};
+
+	private static final ValueDecoder INT16 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (short) reader.nextInteger(MetaType.INT16);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setShort(index, (short) reader.nextInteger(MetaType.INT16));
+		}
+	};
+
+	private static final ValueDecoder UINT16 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (short) reader.nextInteger(MetaType.UINT16);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setShort(index, (short) reader.nextInteger(MetaType.UINT16));
+		}
+	};
+
+	private static final ValueDecoder INT32 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (int) reader.nextInteger(MetaType.INT32);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setInt(index, (int) reader.nextInteger(MetaType.INT32));
+		}
+	};
+
+	private static final ValueDecoder UINT32 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return (int) reader.nextInteger(MetaType.UINT32);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setInt(index, (int) reader.nextInteger(MetaType.UINT32));
+		}
+	};
+
+	private static final ValueDecoder INT64 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextLong();
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setLong(index, reader.nextLong());
+		}
+	};
+
+	private static final ValueDecoder UINT64 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextInteger(MetaType.UINT64);
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setLong(index, reader.nextInteger(MetaType.UINT64));
+		}
+	};
+
+	private static final ValueDecoder FLOAT32 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextFloat();
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setFloat(index, reader.nextFloat());
+		}
+	};
+
+	private static final ValueDecoder FLOAT64 = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextDouble();
+		}
+		void read(JSONReader reader, OutputTuple tuple, int index) throws IOException {
+			tuple.setDouble(index, reader.nextDouble());
+		}
+	};
+
+	private static final ValueDecoder DECIMAL = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextBigDecimal();
+		}
+	};
+
+	private static final ValueDecoder USTRING = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextString();
+		}
+	};
+
+	private static final ValueDecoder RSTRING = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return reader.nextRString();
+		}
+	};
+
+	private static final ValueDecoder TIMESTAMP = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			return Timestamp.getTimestamp(reader.nextDouble());
+		}
+	};
+
+	/**
+	 * Skips values of types that are not supported.
+	 */
+	static final ValueDecoder IGNORE = new ValueDecoder() {
+		Object read(JSONReader reader) throws IOException {
+			reader.skipValue();
+			return null;
+		}
+	};
+
+	private static final class NestedTupleDecoder extends ValueDecoder {
+		private final TupleDecoder decoder;
+
+		NestedTupleDecoder(TupleDecoder decoder) {
+			this.decoder = decoder;
+		}
+
+		Object read(JSONReader reader) throws IOException {
+			return decoder.decodeTuple(reader);
+		}
+	}
+
+	/**
+	 * Decodes a JSON array into a List or Set, null elements are ignored.
+	 */
+	private static final class CollectionDecoder extends ValueDecoder {
+		private final ValueDecoder element;
+		private final boolean set;
+
+		CollectionDecoder(ValueDecoder element, boolean set) {
+			this.element = element;
+			this.set = set;
+		}
+
+		Object read(JSONReader reader) throws IOException {
+			Collection<Object> lst = set ? new HashSet<Object>() : new ArrayList<Object>();
+			reader.beginArray();
+			while (reader.hasNextElement()) {
+				Object obj = element.decode(reader);
+				if (obj != null)
+					lst.add(obj);
+			}
+			return lst;
+		}
+	}
+
+	/**
+	 * Decodes a JSON object into a Map, the member names are the keys
+	 * and members with null values are ignored.
+	 * <p>
+	 * The number of members is not known until the object has been read,
+	 * so the map is presized from the size of the previous map decoded,
+	 * avoiding repeated rehashing of large maps with a similar number of keys.
+	 */
+	private static final class MapDecoder extends ValueDecoder {
+		private final MetaType keyType;
+		private final ValueDecoder value;
+		/** Size of the last map decoded, races between threads only affect the initial capacity. */
+		private int sizeHint;
+
+		MapDecoder(MetaType keyType, ValueDecoder value) {
+			this.keyType = keyType;
+			this.value = value;
+		}
+
+		Object read(JSONReader reader) throws IOException {
+			Map<Object, Object> map = new HashMap<Object, Object>(mapCapacity(sizeHint));
+			reader.beginObject();
+			while (reader.hasNextMember()) {
+				final Object key = key(reader.nextName());
+				final Object obj = value.decode(reader);
+				if (obj != null)
+					map.put(key, obj);
+			}
+			if (map.size() != sizeHint)
+				sizeHint = map.size();
+			return map;
+		}
+
+		private Object key(String name) throws IOException {
+			try {
+				switch (keyType) {
+				case BSTRING:
+				case RSTRING:
+					return new RString(name);
+				case USTRING:
+					return name;
+				case BOOLEAN:
+					return Boolean.parseBoolean(name);
+				case INT8:
+					return Byte.parseByte(name);
+				case UINT8:
+					return (byte) parseUnsigned(name, 0xffL);
+				case INT16:
+					return Short.parseShort(name);
+				case UINT16:
+					return (short) parseUnsigned(name, 0xffffL);
+				case INT32:
+					return Integer.parseInt(name);
+				case UINT32:
+					return (int) parseUnsigned(name, 0xffffffffL);
+				case INT64:
+					return Long.parseLong(name);
+				case UINT64:
+					return parseUnsigned(name, -1L);
+				case FLOAT32:
+					return Float.parseFloat(name);
+				default:
+					return Double.parseDouble(name);
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException(MessageFormat.format(Messages.getString("INVALID_MAP_KEY"), keyType.getLanguageType(), name), e); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * Parse an unsigned key up to {@code max}, {@code -1} for the
+		 * full uint64 range, returning the bits of the value.
+		 */
+		private static long parseUnsigned(String name, long max) {
+			if (max != -1L) {
+				final long value = Long.parseLong(name);
+				if (value < 0 || value > max)
+					throw new NumberFormatException(name);
+				return value;
+			}
+			final BigInteger value = new BigInteger(name);
+			if (value.signum() < 0 || value.bitLength() > 64)
+				throw new NumberFormatException(name);
+			return value.longValue();
+		}
+	}
+
+	/**
+	 * Decodes a JSON array into the Java representation of an SPL list,
+	 * which is a primitive array for primitive element types.
+	 * <p>
+	 * Primitive elements are read directly into a growable primitive buffer
+	 * that is trimmed to the number of elements once the array is read,
+	 * null elements are ignored.
+	 */
+	private static final class ArrayDecoder extends ValueDecoder {
+		private static final int INITIAL_CAPACITY = 16;
+
+		private final String name;
+		private final MetaType elementType;
+		private final ValueDecoder element;
+
+		ArrayDecoder(String name, MetaType elementType, ValueDecoder element) {
+			this.name = name;
+			this.elementType = elementType;
+			this.element = element;
+		}
+
+		Object read(JSONReader reader) throws IOException {
+			reader.beginArray();
+			int cnt = 0;
+			switch (elementType) {
+			case INT8:
+			case UINT8:
+			{
+				byte[] arr = new byte[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = (byte) reader.nextInteger(elementType);
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case INT16:
+			case UINT16:
+			{
+				short[] arr = new short[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = (short) reader.nextInteger(elementType);
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case INT32:
+			case UINT32:
+			{
+				int[] arr = new int[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = (int) reader.nextInteger(elementType);
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case INT64:
+			case UINT64:
+			{
+				long[] arr = new long[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = reader.nextInteger(elementType);
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case BOOLEAN:
+			{
+				boolean[] arr = new boolean[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = reader.nextBoolean();
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case FLOAT32:
+			{
+				float[] arr = new float[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = reader.nextFloat();
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			case FLOAT64:
+			{
+				double[] arr = new double[INITIAL_CAPACITY];
+				while (reader.hasNextElement()) {
+					if (skipNull(reader))
+						continue;
+					if (cnt == arr.length)
+						arr = Arrays.copyOf(arr, cnt << 1);
+					arr[cnt++] = reader.nextDouble();
+				}
+				return cnt == arr.length ? arr : Arrays.copyOf(arr, cnt);
+			}
+			default:
+				return toSPLArray(readList(reader));
+			}
+		}
+
+		private static boolean skipNull(JSONReader reader) throws IOException {
+			if (reader.peek() != JSONReader.NULL)
+				return false;
+			reader.nextNull();
+			return true;
+		}
+
+		private List<Object> readList(JSONReader reader) throws IOException {
+			List<Object> lst = new ArrayList<Object>();
+			while (reader.hasNextElement()) {
+				Object obj = element.decode(reader);
+				if (obj != null)
+					lst.add(obj);
+			}
+			return lst;
+		}
+
+		private Object toSPLArray(List<Object> lst) throws IOException {
+			switch (elementType) {
+			case USTRING:
+				return lst.toArray(new String[lst.size()]);
+
+			case BSTRING:
+			case RSTRING:
+			case TUPLE:
+			case DECIMAL32:
+			case DECIMAL64:
+			case DECIMAL128:
+			case TIMESTAMP:
+				return lst;
+
+				//TODO -- not yet supported types
+			default:
+				l.log(LogLevel.ERROR, Messages.getString("UNHANDLED_ARRAY_TYPE"), new Object[]{elementType}); //$NON-NLS-1$
+				throw new IOException("CDIST0953E Unhandled array type: " + elementType + " for " + name); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+}
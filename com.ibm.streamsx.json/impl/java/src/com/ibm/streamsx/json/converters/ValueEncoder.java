@@ -0,0 +1,257 @@
+package com.ibm.streamsx.json.converters;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import com.ibm.json.java.JSONArray;
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type;
+import com.ibm.streams.operator.encoding.EncodingFactory;
+import com.ibm.streams.operator.encoding.JSONEncoding;
+import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * Writes the SPL value of a single type as JSON.
+ * <p>
+ * The type specific conversion is chosen once when the encoder
+ * is created, producing the same JSON as the standard SPL JSON encoding
+ * returned by {@link EncodingFactory#getJSONEncoding()}.
+ */
+abstract class ValueEncoder {
+
+	/**
+	 * Write the value of attribute {@code index} of {@code tuple}.
+	 * Encoders for primitive types override this to use the
+	 * typed getters and avoid boxing.
+	 */
+	void encode(Tuple tuple, int index, JSONWriter writer) throws IOException {
+		encodeValue(tuple.getObject(index), writer);
+	}
+
+	/**
+	 * Write a value, used for elements of collections.
+	 */
+	abstract void encodeValue(Object value, JSONWriter writer) throws IOException;
+
+	/**
+	 * Create an encoder for {@code type}.
+	 * @return Encoder, or null if values of the type are not encoded
+	 * directly and must use the standard SPL JSON encoding.
+	 */
+	static ValueEncoder forType(Type type) {
+		switch (type.getMetaType()) {
+		case BOOLEAN:
+			return BOOLEAN;
+		case INT8:
+			return INT8;
+		case INT16:
+			return INT16;
+		case INT32:
+			return INT32;
+		case INT64:
+			return INT64;
+		case FLOAT32:
+			return FLOAT32;
+		case FLOAT64:
+			return FLOAT64;
+		case DECIMAL32:
+		case DECIMAL64:
+		case DECIMAL128:
+			return DECIMAL;
+		case USTRING:
+			return USTRING;
+		case RSTRING:
+			return RSTRING;
+
+		case LIST:
+		case BLIST:
+		case SET:
+		case BSET:
+		{
+			ValueEncoder element = forType(((CollectionType) type).getElementType());
+			return element == null ? null : new CollectionEncoder(element);
+		}
+
+		case TUPLE:
+		{
+			TupleEncoder encoder = TupleEncoder.forSchema(((TupleType) type).getTupleSchema());
+			return encoder.isDirect() ? new NestedTupleEncoder(encoder) : null;
+		}
+
+		default:
+			return null;
+		}
+	}
+
+	private static final ValueEncoder BOOLEAN = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeBoolean(tuple.getBoolean(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeBoolean((Boolean) value);
+		}
+	};
+
+	private static final ValueEncoder INT8 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeLong(tuple.getByte(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeLong(((Number) value).longValue());
+		}
+	};
+
+	private static final ValueEncoder INT16 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeLong(tuple.getShort(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeLong(((Number) value).longValue());
+		}
+	};
+
+	private static final ValueEncoder INT32 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeLong(tuple.getInt(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeLong(((Number) value).longValue());
+		}
+	};
+
+	private static final ValueEncoder INT64 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeLong(tuple.getLong(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeLong(((Number) value).longValue());
+		}
+	};
+
+	private static final ValueEncoder FLOAT32 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeFloat(tuple.getFloat(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeFloat((Float) value);
+		}
+	};
+
+	private static final ValueEncoder FLOAT64 = new ValueEncoder() {
+		void encode(Tuple tuple, int index, JSONWriter writer) {
+			writer.writeDouble(tuple.getDouble(index));
+		}
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeDouble((Double) value);
+		}
+	};
+
+	private static final ValueEncoder DECIMAL = new ValueEncoder() {
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeBigDecimal((BigDecimal) value);
+		}
+	};
+
+	private static final ValueEncoder USTRING = new ValueEncoder() {
+		void encodeValue(Object value, JSONWriter writer) {
+			writer.writeString((String) value);
+		}
+	};
+
+	/**
+	 * rstring values are already UTF-8 encoded and are written
+	 * without decoding them to a Java String.
+	 */
+	private static final ValueEncoder RSTRING = new ValueEncoder() {
+		void encodeValue(Object value, JSONWriter writer) {
+			byte[] data = ((RString) value).getData();
+			writer.writeUTF8String(data, 0, data.length);
+		}
+	};
+
+	private static final class CollectionEncoder extends ValueEncoder {
+		private final ValueEncoder element;
+
+		CollectionEncoder(ValueEncoder element) {
+			this.element = element;
+		}
+
+		void encodeValue(Object value, JSONWriter writer) throws IOException {
+			writer.write('[');
+			if (value instanceof Collection) {
+				boolean first = true;
+				for (Object e : (Collection<?>) value) {
+					if (!first)
+						writer.write(',');
+					first = false;
+					element.encodeValue(e, writer);
+				}
+			} else {
+				// primitive array representation of a list
+				final int n = Array.getLength(value);
+				for (int i = 0; i < n; i++) {
+					if (i != 0)
+						writer.write(',');
+					element.encodeValue(Array.get(value, i), writer);
+				}
+			}
+			writer.write(']');
+		}
+	}
+
+	private static final class NestedTupleEncoder extends ValueEncoder {
+		private final TupleEncoder encoder;
+
+		NestedTupleEncoder(TupleEncoder encoder) {
+			this.encoder = encoder;
+		}
+
+		void encodeValue(Object value, JSONWriter writer) throws IOException {
+			encoder.encode((Tuple) value, writer);
+		}
+	}
+
+	/**
+	 * Encodes an attribute using the standard SPL JSON encoding,
+	 * used for types that are not encoded directly, such as
+	 * unsigned integers, timestamps, blobs and maps.
+	 */
+	static final class StandardEncoder extends ValueEncoder {
+		private final String name;
+		private final JSONEncoding<JSONObject, JSONArray> je = EncodingFactory.getJSONEncoding();
+
+		StandardEncoder(String name) {
+			this.name = name;
+		}
+
+		void encode(Tuple tuple, int index, JSONWriter writer) throws IOException {
+			encodeValue(je.getAttributeObject(tuple, name), writer);
+		}
+
+		void encodeValue(Object value, JSONWriter writer) throws IOException {
+			if (value == null)
+				writer.writeNull();
+			else if (value instanceof JSONObject)
+				writer.writeRaw(((JSONObject) value).serialize());
+			else if (value instanceof JSONArray)
+				writer.writeRaw(((JSONArray) value).serialize());
+			else if (value instanceof String)
+				writer.writeString((String) value);
+			else if (value instanceof Boolean)
+				writer.writeBoolean((Boolean) value);
+			else if (value instanceof Float)
+				writer.writeFloat((Float) value);
+			else if (value instanceof Double)
+				writer.writeDouble((Double) value);
+			else if (value instanceof Number)
+				writer.writeRaw(value.toString());
+			else
+				writer.writeString(value.toString());
+		}
+	}
+}
@@ -7,12 +7,15 @@
 # This is a helper utility to create SPL types based on JSON data
 # Note that in cases where the type cannot be determined due to lack of data, 
 # an UNKNOWN_TYPE value will be generated
+# Types are inferred from all the documents in the file, such as newline delimited JSON.
+# Options: -bounded to generate bounded types, -threads n to set the number of scanning threads
 
 
-fil=$@
+args=$@
+fil=${@: -1}
 
 if [ -z "$fil" ]; then
-		echo "$0 jsonFile"
+		echo "$0 [-bounded] [-threads n] jsonFile"
 		exit 1
 fi
 
@@ -34,6 +37,6 @@ if [ ! -e ${jspath}/impl/lib/com.ibm.streamsx.json.jar ]; then
 		exit 1
 fi
 
-cp=${jspath}/impl/lib/com.ibm.streamsx.json.jar:${STREAMS_INSTALL}/ext/lib/JSON4J.jar
+cp=${jspath}/impl/lib/com.ibm.streamsx.json.jar:${jspath}/lib/com.ibm.streamsx.json.converters.jar:${STREAMS_INSTALL}/ext/lib/JSON4J.jar
 
-java -cp $cp com.ibm.streamsx.json.JSONMain $fil
+java -cp $cp com.ibm.streamsx.json.JSONMain $args
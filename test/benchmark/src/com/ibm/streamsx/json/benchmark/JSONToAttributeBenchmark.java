@@ -0,0 +1,57 @@
+package com.ibm.streamsx.json.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.Attribute;
+import com.ibm.streams.operator.Type;
+import com.ibm.streamsx.json.converters.JSONToTupleConverter;
+
+/**
+ * Benchmarks of {@link JSONToTupleConverter#jsonToAttribute(String, Type, Object, Type)}
+ * converting an already parsed JSON array to each list and set attribute of the payloads.
+ * The attribute is given as {@code shape.name}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONToAttributeBenchmark {
+
+	@Param({"wideList.samples", "wideList.counts", "wideList.ids", "strings.tags"})
+	public String attribute;
+
+	private Attribute collection;
+	private Object collectionJson;
+
+	@Setup
+	public void setup() throws Exception {
+		final int dot = attribute.indexOf('.');
+		final String shape = attribute.substring(0, dot);
+		final String name = attribute.substring(dot + 1);
+		collection = Payloads.schema(shape).getAttribute(name);
+		if (collection == null)
+			throw new IllegalArgumentException(attribute);
+		collectionJson = JSONObject.parse(Payloads.json(shape)).get(name);
+	}
+
+	@Benchmark
+	public Object jsonToAttribute() throws Exception {
+		return JSONToTupleConverter.jsonToAttribute(collection.getName(),
+				collection.getType(), collectionJson, null);
+	}
+}
@@ -0,0 +1,80 @@
+package com.ibm.streamsx.json.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streamsx.json.converters.JSONToTupleConverter;
+import com.ibm.streamsx.json.converters.StringJSONReader;
+import com.ibm.streamsx.json.converters.TupleDecoder;
+import com.ibm.streamsx.json.converters.UTF8JSONReader;
+
+/**
+ * Benchmarks of JSON to SPL conversion, both through the JSON4J
+ * object model used by {@link JSONToTupleConverter} and the
+ * streaming {@link TupleDecoder}. The conversion of single list and
+ * set attributes is measured by {@link JSONToAttributeBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONToTupleBenchmark {
+
+	@Param({Payloads.FLAT, Payloads.NESTED, Payloads.WIDE_LIST, Payloads.STRINGS})
+	public String shape;
+
+	private StreamSchema schema;
+	private String json;
+	private byte[] utf8;
+	private TupleDecoder decoder;
+	private StringJSONReader stringReader;
+	private UTF8JSONReader utf8Reader;
+
+	@Setup
+	public void setup() throws Exception {
+		schema = Payloads.schema(shape);
+		json = Payloads.json(shape);
+		utf8 = json.getBytes("UTF-8");
+		decoder = new TupleDecoder(schema);
+		stringReader = new StringJSONReader();
+		utf8Reader = new UTF8JSONReader();
+	}
+
+	@Benchmark
+	public Tuple jsonToTuple() throws Exception {
+		return JSONToTupleConverter.jsonToTuple(JSONObject.parse(json), schema);
+	}
+
+	@Benchmark
+	public Object jsonToAtributeMap() throws Exception {
+		return JSONToTupleConverter.jsonToAtributeMap(JSONObject.parse(json), schema);
+	}
+
+	@Benchmark
+	public Tuple decodeString() throws Exception {
+		stringReader.reset(json);
+		return decoder.decodeTuple(stringReader);
+	}
+
+	@Benchmark
+	public Tuple decodeUTF8() throws Exception {
+		utf8Reader.reset(utf8, 0, utf8.length);
+		return decoder.decodeTuple(utf8Reader);
+	}
+}
@@ -0,0 +1,127 @@
+package com.ibm.streamsx.json.benchmark;
+
+import com.ibm.json.java.JSONArray;
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Type;
+
+/**
+ * JSON documents and matching SPL schemas used by the benchmarks.
+ * <ul>
+ * <li>{@code flat} - a 40 attribute tuple of mixed primitive types.</li>
+ * <li>{@code nested} - tuples nested eight levels deep.</li>
+ * <li>{@code wideList} - numeric lists with thousands of elements.</li>
+ * <li>{@code strings} - long strings including escapes and non-ASCII characters.</li>
+ * </ul>
+ */
+public final class Payloads {
+
+	public static final String FLAT = "flat";
+	public static final String NESTED = "nested";
+	public static final String WIDE_LIST = "wideList";
+	public static final String STRINGS = "strings";
+
+	private static final int NESTED_DEPTH = 8;
+	private static final int LIST_SIZE = 10000;
+
+	private Payloads() {
+	}
+
+	public static StreamSchema schema(String shape) {
+		return Type.Factory.getStreamSchema(splType(shape));
+	}
+
+	public static String splType(String shape) {
+		if (FLAT.equals(shape)) {
+			StringBuilder sb = new StringBuilder("tuple<");
+			for (int i = 0; i < 10; i++) {
+				if (i != 0)
+					sb.append(", ");
+				sb.append("rstring s").append(i)
+					.append(", int64 l").append(i)
+					.append(", float64 d").append(i)
+					.append(", boolean b").append(i);
+			}
+			return sb.append('>').toString();
+		}
+		if (NESTED.equals(shape)) {
+			String type = "tuple<rstring name, int32 value>";
+			for (int i = 0; i < NESTED_DEPTH; i++)
+				type = "tuple<rstring name, int32 value, " + type + " child>";
+			return type;
+		}
+		if (WIDE_LIST.equals(shape))
+			return "tuple<rstring id, list<float64> samples, list<int32> counts, set<int64> ids>";
+		if (STRINGS.equals(shape))
+			return "tuple<rstring a, rstring b, ustring c, list<rstring> tags>";
+		throw new IllegalArgumentException(shape);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static String json(String shape) {
+		if (FLAT.equals(shape)) {
+			JSONObject obj = new JSONObject();
+			for (int i = 0; i < 10; i++) {
+				obj.put("s" + i, "value-" + i);
+				obj.put("l" + i, 1234567890L * i);
+				obj.put("d" + i, 3.14159 * i);
+				obj.put("b" + i, i % 2 == 0);
+			}
+			// members that are not in the schema
+			obj.put("unused", "skip me");
+			obj.put("unusedObject", nested(2));
+			return serialize(obj);
+		}
+		if (NESTED.equals(shape))
+			return serialize(nested(NESTED_DEPTH));
+		if (WIDE_LIST.equals(shape)) {
+			JSONObject obj = new JSONObject();
+			JSONArray samples = new JSONArray();
+			JSONArray counts = new JSONArray();
+			JSONArray ids = new JSONArray();
+			for (int i = 0; i < LIST_SIZE; i++) {
+				samples.add(Math.sin(i) * 1000.0);
+				counts.add((long) i);
+				ids.add(1000000000L + i);
+			}
+			obj.put("id", "sensor-42");
+			obj.put("samples", samples);
+			obj.put("counts", counts);
+			obj.put("ids", ids);
+			return serialize(obj);
+		}
+		if (STRINGS.equals(shape)) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 200; i++)
+				sb.append("line ").append(i).append(" \"quoted\"\tcafé €\n");
+			JSONObject obj = new JSONObject();
+			obj.put("a", sb.toString());
+			obj.put("b", sb.toString().toUpperCase());
+			obj.put("c", sb.toString());
+			JSONArray tags = new JSONArray();
+			for (int i = 0; i < 50; i++)
+				tags.add("tag-" + i);
+			obj.put("tags", tags);
+			return serialize(obj);
+		}
+		throw new IllegalArgumentException(shape);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject nested(int depth) {
+		JSONObject obj = new JSONObject();
+		obj.put("name", "level" + depth);
+		obj.put("value", (long) depth);
+		if (depth > 0)
+			obj.put("child", nested(depth - 1));
+		return obj;
+	}
+
+	private static String serialize(JSONObject obj) {
+		try {
+			return obj.serialize();
+		} catch (java.io.IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
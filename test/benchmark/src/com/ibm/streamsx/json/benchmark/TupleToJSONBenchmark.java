@@ -0,0 +1,62 @@
+package com.ibm.streamsx.json.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type;
+import com.ibm.streamsx.json.converters.JSONToTupleConverter;
+import com.ibm.streamsx.json.converters.TupleToJSONConverter;
+
+/**
+ * Benchmarks of SPL tuple to JSON conversion using {@link TupleToJSONConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TupleToJSONBenchmark {
+
+	@Param({Payloads.FLAT, Payloads.NESTED, Payloads.WIDE_LIST, Payloads.STRINGS})
+	public String shape;
+
+	private Tuple tuple;
+
+	/* Tuple with a single list attribute holding a list of the payload tuples. */
+	private Tuple arrayTuple;
+
+	@Setup
+	public void setup() throws Exception {
+		tuple = JSONToTupleConverter.jsonToTuple(JSONObject.parse(Payloads.json(shape)),
+				Payloads.schema(shape));
+		Tuple[] items = new Tuple[16];
+		Arrays.fill(items, tuple);
+		arrayTuple = Type.Factory.getStreamSchema("tuple<list<" + Payloads.splType(shape) + "> items>")
+				.getTuple(new Object[] {Arrays.asList(items)});
+	}
+
+	@Benchmark
+	public String convertTuple() throws Exception {
+		return TupleToJSONConverter.convertTuple(tuple);
+	}
+
+	@Benchmark
+	public String convertArray() throws Exception {
+		return TupleToJSONConverter.convertArray(arrayTuple, "items");
+	}
+}
@@ -0,0 +1,193 @@
+package com.ibm.streamsx.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChunkedDocumentsTest {
+
+	/**
+	 * Records documents as "D:" and errors as "E:" followed by their text.
+	 */
+	private static class Collector implements ChunkedDocuments.Handler {
+		final List<String> items = new ArrayList<>();
+
+		@Override
+		public void document(byte[] buf, int off, int len) {
+			items.add("D:" + new String(buf, off, len, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void error(String detail, byte[] buf, int off, int len) {
+			items.add("E:" + new String(buf, off, len, StandardCharsets.UTF_8));
+		}
+	}
+
+	private static final String STREAM =
+			" {\"a\":\"x}]\\\"{[y\",\"b\":[1,{\"c\":2}]}\n[3,\"\\\\\",4]\t{}\r\n{\"d\":\"é\"}  ";
+
+	private static final List<String> DOCUMENTS = Arrays.asList(
+			"D:{\"a\":\"x}]\\\"{[y\",\"b\":[1,{\"c\":2}]}",
+			"D:[3,\"\\\\\",4]",
+			"D:{}",
+			"D:{\"d\":\"é\"}");
+
+	private static List<String> scan(ChunkedDocuments chunks, String... chunkText) throws Exception {
+		Collector c = new Collector();
+		for (String text : chunkText) {
+			byte[] data = text.getBytes(StandardCharsets.UTF_8);
+			chunks.add(data, 0, data.length, c);
+		}
+		return c.items;
+	}
+
+	/**
+	 * Test the same documents are found wherever the stream is split into two chunks.
+	 */
+	@Test
+	public void testSplitAtEveryOffset() throws Exception {
+		byte[] data = STREAM.getBytes(StandardCharsets.UTF_8);
+		for (int split = 0; split <= data.length; split++) {
+			ChunkedDocuments chunks = new ChunkedDocuments(1024);
+			Collector c = new Collector();
+			// chunks are passed within larger arrays to check offsets are honoured
+			byte[] first = new byte[split + 2];
+			System.arraycopy(data, 0, first, 1, split);
+			chunks.add(first, 1, split, c);
+			chunks.add(data, split, data.length - split, c);
+			assertEquals("split at " + split, DOCUMENTS, c.items);
+			assertFalse(chunks.isPending());
+		}
+	}
+
+	/**
+	 * Test the stream passed one byte at a time.
+	 */
+	@Test
+	public void testSingleByteChunks() throws Exception {
+		byte[] data = STREAM.getBytes(StandardCharsets.UTF_8);
+		ChunkedDocuments chunks = new ChunkedDocuments(1024);
+		Collector c = new Collector();
+		for (int i = 0; i < data.length; i++)
+			chunks.add(data, i, 1, c);
+		assertEquals(DOCUMENTS, c.items);
+	}
+
+	/**
+	 * Test the string and escape state carries over to the next chunk.
+	 */
+	@Test
+	public void testSplitInString() throws Exception {
+		// split inside a string containing a closing brace
+		assertEquals(Arrays.asList("D:{\"a\":\"}}\"}"),
+				scan(new ChunkedDocuments(1024), "{\"a\":\"}", "}\"}"));
+
+		// split right after a backslash, the quote that follows is escaped
+		ChunkedDocuments chunks = new ChunkedDocuments(1024);
+		assertTrue(scan(chunks, "{\"a\":\"x\\").isEmpty());
+		assertTrue(chunks.isPending());
+		assertEquals(Arrays.asList("D:{\"a\":\"x\\\"}\"}"),
+				scan(chunks, "\"}\"}"));
+
+		// split after an escaped backslash, the quote that follows ends the string
+		assertEquals(Arrays.asList("D:{\"a\":\"\\\\\"}"),
+				scan(new ChunkedDocuments(1024), "{\"a\":\"\\\\", "\"}"));
+	}
+
+	/**
+	 * Test a document only completes when its outermost object or array closes.
+	 */
+	@Test
+	public void testNestedDepth() throws Exception {
+		ChunkedDocuments chunks = new ChunkedDocuments(1024);
+		assertTrue(scan(chunks, "[[[{\"a\":[{}],\"b\":{\"c\":[[]]}}", "]]").isEmpty());
+		assertTrue(chunks.isPending());
+		assertEquals(Arrays.asList("D:[[[{\"a\":[{}],\"b\":{\"c\":[[]]}}]]]", "D:[]"),
+				scan(chunks, "] []"));
+		assertFalse(chunks.isPending());
+	}
+
+	/**
+	 * Test documents over the maximum size are reported with the bytes up
+	 * to the maximum and scanning continues with the next document.
+	 */
+	@Test
+	public void testMaxDocumentSize() throws Exception {
+		// oversized document within a single chunk
+		ChunkedDocuments chunks = new ChunkedDocuments(10);
+		assertEquals(Arrays.asList("E:{\"abcdefgh", "D:[1]"),
+				scan(chunks, "{\"abcdefghij\":1} [1]"));
+
+		// document of exactly the maximum size
+		assertEquals(Arrays.asList("D:{\"abc\":12}"),
+				scan(chunks, "{\"abc\":", "12}"));
+
+		// oversized document spanning chunks, its remainder is skipped
+		// including closing brackets within a string
+		chunks = new ChunkedDocuments(10);
+		assertEquals(Arrays.asList("E:{\"a\":\"1234"),
+				scan(chunks, "{\"a\":\"12345"));
+		assertTrue(chunks.isPending());
+		assertTrue(scan(chunks, "6}]").isEmpty());
+		assertEquals(Arrays.asList("D:{}"),
+				scan(chunks, "\"} {}"));
+		assertFalse(chunks.isPending());
+
+		// oversized document completed in a later chunk
+		chunks = new ChunkedDocuments(10);
+		assertEquals(Arrays.asList("E:[1,2,3,4,5", "D:[6]"),
+				scan(chunks, "[1,2,3,", "4,5,6,7] [6]"));
+	}
+
+	/**
+	 * Test input that cannot start a document is reported up to the
+	 * next whitespace or document, including across chunks.
+	 */
+	@Test
+	public void testInvalidInput() throws Exception {
+		ChunkedDocuments chunks = new ChunkedDocuments(1024);
+		assertEquals(Arrays.asList("E:abc", "D:{\"a\":1}", "E:}"),
+				scan(chunks, "abc{\"a\":1} } 12"));
+		assertFalse(chunks.isPending());
+		assertEquals(Arrays.asList("E:123", "D:[]"),
+				scan(chunks, "3 []"));
+
+		// invalid input is reported once it spans chunks over the maximum size
+		chunks = new ChunkedDocuments(4);
+		assertEquals(Arrays.asList("E:abcdef", "D:{}"),
+				scan(chunks, "abcdef {}"));
+		assertEquals(Arrays.asList("E:abcdef", "E:gh", "D:{}"),
+				scan(chunks, "ab", "cdef", "gh {}"));
+	}
+
+	/**
+	 * Test a partial document at the end of the stream is pending
+	 * and is discarded by reset.
+	 */
+	@Test
+	public void testPartialDocumentAtEnd() throws Exception {
+		ChunkedDocuments chunks = new ChunkedDocuments(1024);
+		assertEquals(Arrays.asList("D:{}"),
+				scan(chunks, "{} {\"a\":[1,"));
+		assertTrue(chunks.isPending());
+		chunks.reset();
+		assertFalse(chunks.isPending());
+		assertEquals(Arrays.asList("D:[2]"),
+				scan(chunks, "[2]"));
+
+		// a document being discarded for its size is also pending
+		chunks = new ChunkedDocuments(4);
+		scan(chunks, "[1,2,3");
+		assertTrue(chunks.isPending());
+		chunks.reset();
+		assertEquals(Arrays.asList("D:[]"),
+				scan(chunks, "[]"));
+	}
+}
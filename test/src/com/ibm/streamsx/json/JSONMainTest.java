@@ -0,0 +1,213 @@
+package com.ibm.streamsx.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.streamsx.json.converters.UTF8JSONReader;
+
+public class JSONMainTest {
+
+	private static InferredType infer(String... documents) throws Exception {
+		InferredType type = new InferredType();
+		for (String document : documents)
+			type.add(new UTF8JSONReader(document.getBytes(StandardCharsets.UTF_8)));
+		return type;
+	}
+
+	private static List<String> statistics(InferredType type) {
+		List<String> lines = new ArrayList<>();
+		type.statistics(lines, "$", 0);
+		return lines;
+	}
+
+	private static String splType(InferredType type, boolean bounded) {
+		List<String> typeList = new ArrayList<>();
+		String ret = type.splType(typeList, new HashSet<String>(), "", "Main", bounded);
+		typeList.add(ret);
+		return typeList.toString();
+	}
+
+	private static File file(String content) throws Exception {
+		File f = File.createTempFile("jsonmain", ".json");
+		f.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(f)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return f;
+	}
+
+	/**
+	 * Test integers are widened to float64 by any value with a fraction
+	 * or beyond the range of int64, and mixed kinds are read as rstring.
+	 */
+	@Test
+	public void testWidening() throws Exception {
+		InferredType type = infer(
+				"{\"i\":1,\"f\":2,\"l\":3,\"m\":4,\"s\":\"ab\",\"b\":true,\"n\":null}",
+				"{\"i\":-7,\"f\":2.5,\"l\":12345678901234567890,\"m\":\"x\",\"s\":\"abcd\",\"b\":false,\"n\":null}",
+				"{\"i\":null,\"f\":1e3,\"l\":null,\"m\":true,\"s\":null,\"b\":null,\"n\":null}");
+		assertTrue(type.isObject());
+		assertEquals("[type MainType = int64 i, float64 f, float64 l, rstring m, rstring s, boolean b, UNKNOWN_TYPE n;, MainType]",
+				splType(type, false));
+		assertEquals("[type MainType = int64 i, float64 f, float64 l, rstring m, rstring[4] s, boolean b, UNKNOWN_TYPE n;, MainType]",
+				splType(type, true));
+
+		List<String> lines = statistics(type);
+		assertEquals("// $.i: null=1 integer=2 [-7..1]", lines.get(1));
+		assertEquals("// $.f: integer=1 [2..2] float=2", lines.get(2));
+	}
+
+	/**
+	 * Test members missing from some objects are reported as optional,
+	 * and nested objects and arrays are typed from all their values.
+	 */
+	@Test
+	public void testOptional() throws Exception {
+		InferredType type = infer(
+				"{\"a\":1,\"b\":{\"c\":[1,2,3]}}",
+				"{\"a\":2}",
+				"{\"a\":3,\"b\":{\"c\":[],\"d\":\"x\"}}",
+				"{\"a\":4}");
+
+		List<String> lines = statistics(type);
+		assertEquals("// $: object=4", lines.get(0));
+		assertEquals("// $.a: integer=4 [1..4]", lines.get(1));
+		assertEquals("// $.b:" + String.format(" optional (present in %.1f%%)", 50.0) + " object=2", lines.get(2));
+		assertEquals("// $.b.c: array=2 maxLength=3", lines.get(3));
+		assertEquals("// $.b.c[*]: integer=3 [1..3]", lines.get(4));
+		assertEquals("// $.b.d:" + String.format(" optional (present in %.1f%%)", 50.0) + " string=1 maxLength=1", lines.get(5));
+
+		assertEquals("[type bType = list<int64>[3] c, rstring[1] d;, type MainType = int64 a, bType b;, MainType]",
+				splType(type, true));
+	}
+
+	/**
+	 * Test merging the statistics of separate samples gives the
+	 * same result as scanning all the documents in order.
+	 */
+	@Test
+	public void testMerge() throws Exception {
+		String[] first = {
+				"{\"a\":1,\"b\":\"xy\"}",
+				"{\"a\":2,\"c\":null}" };
+		String[] second = {
+				"{\"a\":2.5,\"d\":[{\"e\":1}],\"b\":\"xyz\"}",
+				"{\"c\":[true],\"d\":[{\"e\":2,\"f\":3},{}]}" };
+		String[] all = new String[first.length + second.length];
+		System.arraycopy(first, 0, all, 0, first.length);
+		System.arraycopy(second, 0, all, first.length, second.length);
+
+		InferredType merged = infer(first);
+		merged.merge(infer(second));
+		InferredType expected = infer(all);
+
+		assertEquals(statistics(expected), statistics(merged));
+		assertEquals(splType(expected, true), splType(merged, true));
+		assertEquals("[type dType = int64 e, int64 f;, type MainType = float64 a, rstring[3] b, list<boolean>[1] c, list<dType>[2] d;, MainType]",
+				splType(merged, true));
+
+		// merging into empty statistics, as the fork/join scan does for an empty segment
+		InferredType empty = new InferredType();
+		empty.merge(expected);
+		assertEquals(statistics(expected), statistics(empty));
+	}
+
+	/**
+	 * Test a single pretty-printed document larger than a segment
+	 * is scanned as one document.
+	 */
+	@Test
+	public void testLargeDocument() throws Exception {
+		StringBuilder sb = new StringBuilder("[\n");
+		for (int i = 0; i < 100; i++)
+			sb.append(i == 0 ? "" : ",\n").append("  {\n    \"a\": ").append(i).append(",\n    \"s\": \"]}\\\"\\n\"\n  }");
+		sb.append("\n]\n");
+		final String document = sb.toString();
+
+		final int segmentSize = JSONMain.SEGMENT_SIZE;
+		JSONMain.SEGMENT_SIZE = 64;
+		try {
+			File f = file(document);
+			try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+				assertArrayEquals(new long[] {0, f.length()}, JSONMain.segments(raf.getChannel()));
+			}
+			InferredType root = JSONMain.infer(f.getPath(), 4);
+			assertEquals(1, root.count);
+			assertEquals(0, root.invalid);
+			assertTrue(root.isArray());
+			assertEquals(100, root.elements.count);
+			assertEquals(100, root.maxArrayLength);
+
+			// documents following the leading document are split at lines
+			sb = new StringBuilder(document);
+			for (int i = 0; i < 50; i++)
+				sb.append("{\"a\":").append(i).append("}\n");
+			f = file(sb.toString());
+			try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+				long[] bounds = JSONMain.segments(raf.getChannel());
+				assertTrue(bounds.length > 3);
+				assertEquals(document.length(), bounds[1]);
+			}
+			root = JSONMain.infer(f.getPath(), 4);
+			assertEquals(51, root.count);
+			assertEquals(0, root.invalid);
+			assertFalse(root.isArray());
+			assertEquals(1, root.arrays);
+			assertEquals(50, root.objects);
+		} finally {
+			JSONMain.SEGMENT_SIZE = segmentSize;
+		}
+	}
+
+	/**
+	 * Test newline delimited JSON split into segments scanned in parallel
+	 * gives the same statistics as a single segment.
+	 */
+	@Test
+	public void testSegments() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			sb.append("{\"a\":").append(i);
+			if (i % 3 == 0)
+				sb.append(",\"b\":\"").append(i).append('"');
+			if (i == 400)
+				sb.append(",\"c\":1.5");
+			sb.append("}\n");
+			if (i == 250)
+				sb.append("not json\n");
+		}
+		File f = file(sb.toString());
+
+		InferredType single = JSONMain.infer(f.getPath(), 1);
+		assertEquals(501, single.count);
+		assertEquals(1, single.invalid);
+
+		final int segmentSize = JSONMain.SEGMENT_SIZE;
+		JSONMain.SEGMENT_SIZE = 100;
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+				long[] bounds = JSONMain.segments(raf.getChannel());
+				assertTrue(bounds.length > 10);
+				assertEquals(f.length(), bounds[bounds.length - 1]);
+			}
+			InferredType parallel = JSONMain.infer(f.getPath(), 4);
+			assertEquals(single.invalid, parallel.invalid);
+			assertEquals(statistics(single), statistics(parallel));
+			assertEquals(splType(single, true), splType(parallel, true));
+		} finally {
+			JSONMain.SEGMENT_SIZE = segmentSize;
+		}
+	}
+}
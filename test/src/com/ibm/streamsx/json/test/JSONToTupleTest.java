@@ -4,6 +4,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 import com.ibm.json.java.JSONObject;
@@ -13,10 +17,12 @@ import com.ibm.streams.flow.declare.OperatorGraphFactory;
 import com.ibm.streams.flow.declare.OperatorInvocation;
 import com.ibm.streams.flow.declare.OutputPortDeclaration;
 import com.ibm.streams.flow.handlers.MostRecent;
+import com.ibm.streams.flow.handlers.StreamCollector;
 import com.ibm.streams.flow.javaprimitives.JavaOperatorTester;
 import com.ibm.streams.flow.javaprimitives.JavaTestableGraph;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.Type;
@@ -91,4 +97,91 @@ public class JSONToTupleTest {
 		testableGraph.shutdown().get();
 		
 	}
+	
+	/**
+	 * Test tuples converted by multiple threads are submitted in input order.
+	 */
+	@Test
+	public void testThreadedOrder() throws Exception {
+
+		OperatorGraph graph = OperatorGraphFactory.newGraph();
+
+		StreamSchema inSchema = Type.Factory.getStreamSchema("tuple<int32 a, rstring jsonString>");
+		StreamSchema outSchema = Type.Factory.getStreamSchema("tuple<int32 a, int64 b>");
+
+		OperatorInvocation<JSONToTuple> tuple2Json = graph.addOperator(JSONToTuple.class);
+		tuple2Json.setIntParameter("threads", 4);
+		tuple2Json.setIntParameter("queueDepth", 8);
+
+		InputPortDeclaration input = tuple2Json.addInput(inSchema);
+		OutputPortDeclaration output = tuple2Json.addOutput(outSchema);
+		
+		assertTrue(graph.compileChecks());
+		
+		JavaTestableGraph testableGraph = new JavaOperatorTester().executable(graph);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+		
+		StreamCollector<LinkedList<Tuple>, Tuple> collector = StreamCollector.newLinkedListCollector();
+		testableGraph.registerStreamHandler(output, collector);
+
+		testableGraph.initialize().get().allPortsReady().get();
+		
+		final int count = 500;
+		for (int i = 0; i < count; i++) {
+			JSONObject j = new JSONObject();
+			j.put("b", (long) i * 7);
+			testInput.submitAsTuple(i, new RString(j.serialize()));
+		}
+		// punctuation is only forwarded once all earlier tuples are submitted
+		testInput.punctuate(Punctuation.WINDOW_MARKER);
+
+		List<Tuple> tuples = collector.getTuples();
+		assertEquals(count, tuples.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, tuples.get(i).getInt("a"));
+			assertEquals(i * 7L, tuples.get(i).getLong("b"));
+		}
+		
+		testableGraph.shutdown().get();
+	}
+
+	/**
+	 * Test JSON objects are converted to map attributes.
+	 */
+	@Test
+	public void testMapAttribute() throws Exception {
+
+		OperatorGraph graph = OperatorGraphFactory.newGraph();
+
+		StreamSchema inSchema = Type.Factory.getStreamSchema("tuple<rstring jsonString>");
+		StreamSchema outSchema = Type.Factory.getStreamSchema("tuple<map<rstring, float64> m, map<int32, list<int32>> l>");
+
+		OperatorInvocation<JSONToTuple> tuple2Json = graph.addOperator(JSONToTuple.class);
+
+		InputPortDeclaration input = tuple2Json.addInput(inSchema);
+		OutputPortDeclaration output = tuple2Json.addOutput(outSchema);
+		
+		assertTrue(graph.compileChecks());
+		
+		JavaTestableGraph testableGraph = new JavaOperatorTester().executable(graph);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+		
+		MostRecent<Tuple> mr = new MostRecent<>();
+		testableGraph.registerStreamHandler(output, mr);
+
+		testableGraph.initialize().get().allPortsReady().get();
+		
+		testInput.submitAsTuple(new RString("{\"m\":{\"cpu\":0.5,\"mem\":12,\"disk\":null},\"l\":{\"1\":[1,2],\"7\":[]}}"));
+		Tuple outTuple = mr.getMostRecentTuple();
+		Map<?, ?> m = outTuple.getMap("m");
+		assertEquals(2, m.size());
+		assertEquals(0.5d, (Double) m.get(new RString("cpu")), 0.0);
+		assertEquals(12d, (Double) m.get(new RString("mem")), 0.0);
+		Map<?, ?> l = outTuple.getMap("l");
+		assertEquals(2, l.size());
+		assertEquals(2, ((List<?>) l.get(1)).size());
+		assertTrue(((List<?>) l.get(7)).isEmpty());
+		
+		testableGraph.shutdown().get();
+	}
 }
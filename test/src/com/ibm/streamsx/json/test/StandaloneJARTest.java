@@ -1,8 +1,14 @@
 package com.ibm.streamsx.json.test;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,8 +20,14 @@ import com.ibm.streams.operator.StreamSchema;
 import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.Type;
 import com.ibm.streams.operator.types.RString;
+import com.ibm.streamsx.json.converters.JSONReader;
 import com.ibm.streamsx.json.converters.JSONToTupleConverter;
+import com.ibm.streamsx.json.converters.JSONWriter;
+import com.ibm.streamsx.json.converters.LazyJSONTuple;
+import com.ibm.streamsx.json.converters.StringJSONReader;
+import com.ibm.streamsx.json.converters.TupleDecoder;
 import com.ibm.streamsx.json.converters.TupleToJSONConverter;
+import com.ibm.streamsx.json.converters.UTF8JSONReader;
 
 public class StandaloneJARTest {
 	
@@ -55,6 +67,378 @@ public class StandaloneJARTest {
 		Assert.assertEquals(tuple.getSet("f"), fSet);
 	}
 	
+	@Test
+	public void toTupleDecoder() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(schema);
+		StringJSONReader reader = new StringJSONReader("{\"ignored\": {\"x\": [1, {}]}," + jsonStr.substring(1));
+		
+		Tuple tuple = decoder.decodeTuple(reader);
+		reader.endDocument();
+		Assert.assertNotNull(tuple);
+		Assert.assertEquals(1, reader.getSkippedMemberCount());
+		Assert.assertEquals(tuple.getString("a"), "xyz");
+		Assert.assertEquals(tuple.getInt("b"), 10);
+		Assert.assertEquals(tuple.getDouble("c"), 3.3, 0.0001);
+		
+		Object[] dArr = {new RString("x"), new RString("y"), new RString("z")};
+		Assert.assertArrayEquals(tuple.getList("d").toArray(), dArr);
+		
+		Tuple eTuple = tuple.getTuple("e");
+		Assert.assertEquals(eTuple.getString("s"), "mmm");
+		Assert.assertEquals(eTuple.getInt("t"), 10);
+		
+		Set<Integer> fSet = new HashSet<>();
+		fSet.addAll(Arrays.asList(1, 2, 3, 4, 5));
+		Assert.assertEquals(tuple.getSet("f"), fSet);
+	}
+	
+	@Test
+	public void toTupleDecoderPaths() throws Exception {
+
+		Map<String, String> paths = new HashMap<>();
+		paths.put("s", "$.e.s");
+		paths.put("t", "$.e['t']");
+		paths.put("d1", "$.d[1]");
+		paths.put("f4", "$.f[4]");
+		TupleDecoder decoder = new TupleDecoder(
+				Type.Factory.getStreamSchema("tuple<rstring a, rstring s, int32 t, rstring d1, int32 f4>"), paths);
+		
+		Tuple tuple = decoder.decodeTuple(new StringJSONReader(jsonStr));
+		Assert.assertEquals("xyz", tuple.getString("a"));
+		Assert.assertEquals("mmm", tuple.getString("s"));
+		Assert.assertEquals(10, tuple.getInt("t"));
+		Assert.assertEquals("y", tuple.getString("d1"));
+		Assert.assertEquals(5, tuple.getInt("f4"));
+	}
+
+	private static Tuple decode(TupleDecoder decoder, String json) throws IOException {
+		return decoder.decodeTuple(new UTF8JSONReader(json.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void stringCacheHit() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<rstring r, ustring u, rstring n>"),
+				Collections.<String,String>emptyMap(), Arrays.asList("r", "u"), 16, false);
+
+		Tuple first = decode(decoder, "{\"r\": \"GET\", \"u\": \"OK\", \"n\": \"x\"}");
+		Tuple second = decode(decoder, "{\"r\": \"GET\", \"u\": \"OK\", \"n\": \"x\"}");
+		Assert.assertEquals(new RString("GET"), second.getObject("r"));
+		Assert.assertSame(first.getObject("r"), second.getObject("r"));
+		Assert.assertSame(first.getObject("u"), second.getObject("u"));
+		Assert.assertNotSame(first.getObject("n"), second.getObject("n"));
+
+		// the characters of a String input are cached separately from UTF-8 bytes
+		Tuple chars = decoder.decodeTuple(new StringJSONReader("{\"u\": \"OK\"}"));
+		Assert.assertSame(chars.getObject("u"), decoder.decodeTuple(new StringJSONReader("{\"u\": \"OK\"}")).getObject("u"));
+		Assert.assertEquals("OK", chars.getObject("u"));
+
+		// escaped strings are decoded and not cached
+		Tuple escaped = decode(decoder, "{\"r\": \"G\\u0045T\"}");
+		Assert.assertEquals(new RString("GET"), escaped.getObject("r"));
+	}
+
+	@Test
+	public void stringCacheClockEviction() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<rstring r>"),
+				Collections.<String,String>emptyMap(), Arrays.asList("r"), 2, false);
+
+		Object a = decode(decoder, "{\"r\": \"a\"}").getObject("r");
+		Object b = decode(decoder, "{\"r\": \"b\"}").getObject("r");
+		// a is referenced so the clock passes over it and evicts b
+		Assert.assertSame(a, decode(decoder, "{\"r\": \"a\"}").getObject("r"));
+		Object c = decode(decoder, "{\"r\": \"c\"}").getObject("r");
+		Assert.assertSame(a, decode(decoder, "{\"r\": \"a\"}").getObject("r"));
+		Assert.assertSame(c, decode(decoder, "{\"r\": \"c\"}").getObject("r"));
+		Object b2 = decode(decoder, "{\"r\": \"b\"}").getObject("r");
+		Assert.assertEquals(b, b2);
+		Assert.assertNotSame(b, b2);
+	}
+
+	@Test
+	public void stringCacheAutoDisable() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<rstring id, rstring kind>"),
+				Collections.<String,String>emptyMap(), Collections.<String>emptySet(), 64, true);
+
+		Object kind = decode(decoder, "{\"id\": \"x\", \"kind\": \"event\"}").getObject("kind");
+		Object id = decode(decoder, "{\"id\": \"x\", \"kind\": \"event\"}").getObject("id");
+		for (int i = 0; i < 10000; i++) {
+			Tuple tuple = decode(decoder, "{\"id\": \"id" + i + "\", \"kind\": \"event\"}");
+			Assert.assertEquals(new RString("id" + i), tuple.getObject("id"));
+			Assert.assertSame(kind, tuple.getObject("kind"));
+		}
+		// unique ids disabled caching of the id attribute, kind is still cached
+		Tuple tuple = decode(decoder, "{\"id\": \"x\", \"kind\": \"event\"}");
+		Assert.assertEquals(id, tuple.getObject("id"));
+		Assert.assertNotSame(id, tuple.getObject("id"));
+		Assert.assertNotSame(tuple.getObject("id"), decode(decoder, "{\"id\": \"x\"}").getObject("id"));
+		Assert.assertSame(kind, tuple.getObject("kind"));
+	}
+
+	@Test
+	public void stringCacheConcurrentEviction() throws Exception {
+
+		// more distinct values than the cache holds so lookups race with evictions
+		final TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<rstring r, ustring u>"),
+				Collections.<String,String>emptyMap(), Arrays.asList("r", "u"), 4, false);
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 20000; i++) {
+							String value = "value" + ((i * 7 + seed) % 11);
+							Tuple tuple = decode(decoder, "{\"r\": \"" + value + "\", \"u\": \"" + value + "\"}");
+							Assert.assertEquals(new RString(value), tuple.getObject("r"));
+							Assert.assertEquals(value, tuple.getObject("u"));
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+	}
+
+	@Test
+	public void toTuplesNDJSON() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<rstring s, int32 t>"));
+		UTF8JSONReader reader = new UTF8JSONReader(
+				"{\"s\": \"a\", \"t\": 1}\n\n{\"t\": 2}\n{not json}\n{\"s\": \"c\"}\n".getBytes("UTF-8"));
+		
+		List<Tuple> tuples = new ArrayList<>();
+		int errors = 0;
+		while (true) {
+			try {
+				if (!reader.hasNextDocument())
+					break;
+				tuples.add(decoder.decodeTuple(reader));
+			} catch (IOException e) {
+				errors++;
+				reader.skipLine();
+			}
+		}
+		Assert.assertEquals(1, errors);
+		Assert.assertEquals(3, tuples.size());
+		Assert.assertEquals("a", tuples.get(0).getString("s"));
+		Assert.assertEquals(2, tuples.get(1).getInt("t"));
+		Assert.assertEquals("c", tuples.get(2).getString("s"));
+
+		// a 0xFF byte is invalid input, not the end of input
+		byte[] json = "{\"t\": 1}\n?\n{\"t\": 3}\n".getBytes("UTF-8");
+		json[9] = (byte) 0xff;
+		reader = new UTF8JSONReader(json);
+		tuples.clear();
+		errors = 0;
+		while (true) {
+			try {
+				if (!reader.hasNextDocument())
+					break;
+				tuples.add(decoder.decodeTuple(reader));
+			} catch (IOException e) {
+				errors++;
+				reader.skipLine();
+			}
+		}
+		Assert.assertEquals(1, errors);
+		Assert.assertEquals(2, tuples.size());
+		Assert.assertEquals(3, tuples.get(1).getInt("t"));
+
+		reader.reset(json, 0, 10);
+		decoder.decodeTuple(reader);
+		try {
+			reader.endDocument();
+			Assert.fail("0xFF after the document");
+		} catch (IOException e) {
+		}
+	}
+	
+	@Test
+	public void toTupleStrictNumbers() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<int8 i, uint8 u, float64 d, decimal64 m>"));
+		String json = "{\"i\": 1.5e2, \"u\": 200, \"d\": 2.2250738585072014e-308, \"m\": 123.4500}";
+		
+		Tuple tuple = decoder.decodeTuple(new StringJSONReader(json));
+		Assert.assertEquals((byte) 150, tuple.getByte("i"));
+		Assert.assertEquals((byte) 200, tuple.getByte("u"));
+		Assert.assertEquals(Double.MIN_NORMAL, tuple.getDouble("d"), 0.0);
+		Assert.assertEquals(new BigDecimal("123.4500"), tuple.getBigDecimal("m"));
+		
+		StringJSONReader reader = new StringJSONReader(json);
+		reader.setStrictNumbers(true);
+		try {
+			decoder.decodeTuple(reader);
+			Assert.fail("int8 out of range");
+		} catch (IOException e) {
+		}
+		reader.reset(json.replace("1.5e2", "-1.28e2"));
+		tuple = decoder.decodeTuple(reader);
+		Assert.assertEquals((byte) -128, tuple.getByte("i"));
+		Assert.assertEquals((byte) 200, tuple.getByte("u"));
+
+		// strings outside the range of the type fail in either mode, numbers are truncated unless strict
+		tuple = decoder.decodeTuple(new StringJSONReader("{\"i\": 300, \"u\": \"200\"}"));
+		Assert.assertEquals((byte) 300, tuple.getByte("i"));
+		Assert.assertEquals((byte) 200, tuple.getByte("u"));
+		for (String string : new String[] {"{\"i\": \"300\"}", "{\"u\": \"256\"}", "{\"u\": \"-1\"}"}) {
+			try {
+				decoder.decodeTuple(new StringJSONReader(string));
+				Assert.fail("out of range: " + string);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Test
+	public void toTupleUnsigned64() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema("tuple<uint64 u, int64 i>"));
+		final String twoTo63 = "9223372036854775808";
+		final String twoTo64Less1 = "18446744073709551615";
+		final String twoTo64 = "18446744073709551616";
+
+		for (boolean strict : new boolean[] {false, true}) {
+			for (boolean utf8 : new boolean[] {false, true}) {
+				// uint64 values beyond the range of a long are held in a long with the same bits
+				Tuple tuple = decodeNumbers(decoder, "{\"u\": " + twoTo63 + ", \"i\": -9223372036854775808}", strict, utf8);
+				Assert.assertEquals(Long.MIN_VALUE, tuple.getLong("u"));
+				Assert.assertEquals(Long.MIN_VALUE, tuple.getLong("i"));
+				tuple = decodeNumbers(decoder, "{\"u\": " + twoTo64Less1 + "}", strict, utf8);
+				Assert.assertEquals(-1L, tuple.getLong("u"));
+				tuple = decodeNumbers(decoder, "{\"u\": \"" + twoTo64Less1 + "\"}", strict, utf8);
+				Assert.assertEquals(-1L, tuple.getLong("u"));
+				tuple = decodeNumbers(decoder, "{\"u\": 9.3e18}", strict, utf8);
+				Assert.assertEquals(new BigInteger("9300000000000000000").longValue(), tuple.getLong("u"));
+
+				// strings beyond 64 bits fail in either mode
+				for (String json : new String[] {
+						"{\"u\": \"" + twoTo64 + "\"}",
+						"{\"i\": \"" + twoTo63 + "\"}"}) {
+					try {
+						decodeNumbers(decoder, json, strict, utf8);
+						Assert.fail("out of range: " + json);
+					} catch (IOException e) {
+					}
+				}
+
+				// numbers beyond 64 bits are truncated to their low 64 bits unless strict
+				for (String[] member : new String[][] {
+						{"u", twoTo64}, {"u", "123456789012345678901234567890"},
+						{"i", twoTo63}, {"i", "-9223372036854775809"}}) {
+					try {
+						tuple = decodeNumbers(decoder, "{\"" + member[0] + "\": " + member[1] + "}", strict, utf8);
+						Assert.assertFalse(member[1], strict);
+						Assert.assertEquals(member[1], new BigInteger(member[1]).longValue(), tuple.getLong(member[0]));
+					} catch (IOException e) {
+						Assert.assertTrue(member[1], strict);
+					}
+				}
+
+				// negative uint64 values are cast unless strict
+				for (String json : new String[] {"{\"u\": -1}", "{\"u\": \"-1\"}", "{\"u\": -1.0}"}) {
+					try {
+						tuple = decodeNumbers(decoder, json, strict, utf8);
+						Assert.assertFalse(strict);
+						Assert.assertEquals(-1L, tuple.getLong("u"));
+					} catch (IOException e) {
+						Assert.assertTrue(strict);
+					}
+				}
+
+				// a double beyond uint64 saturates unless strict
+				try {
+					tuple = decodeNumbers(decoder, "{\"u\": 1e20}", strict, utf8);
+					Assert.assertFalse(strict);
+					Assert.assertEquals(-1L, tuple.getLong("u"));
+				} catch (IOException e) {
+					Assert.assertTrue(strict);
+				}
+			}
+		}
+	}
+
+	private static Tuple decodeNumbers(TupleDecoder decoder, String json, boolean strict, boolean utf8) throws Exception {
+		JSONReader reader = utf8 ? new UTF8JSONReader(json.getBytes("UTF-8")) : new StringJSONReader(json);
+		reader.setStrictNumbers(strict);
+		return decoder.decodeTuple(reader);
+	}
+
+	@Test
+	public void toTupleUnsignedMapKeys() throws Exception {
+
+		TupleDecoder decoder = new TupleDecoder(Type.Factory.getStreamSchema(
+				"tuple<map<uint8, int32> a, map<uint16, int32> b, map<uint32, int32> c, map<uint64, int32> d>"));
+		Tuple tuple = decoder.decodeTuple(new StringJSONReader(
+				"{\"a\": {\"200\": 1}, \"b\": {\"65535\": 2}, \"c\": {\"4000000000\": 3}, \"d\": {\"18446744073709551615\": 4}}"));
+		Assert.assertEquals(1, tuple.getMap("a").get((byte) 200));
+		Assert.assertEquals(2, tuple.getMap("b").get((short) 65535));
+		Assert.assertEquals(3, tuple.getMap("c").get((int) 4000000000L));
+		Assert.assertEquals(4, tuple.getMap("d").get(-1L));
+
+		for (String json : new String[] {"{\"a\": {\"256\": 1}}", "{\"a\": {\"-1\": 1}}",
+				"{\"c\": {\"4294967296\": 1}}", "{\"d\": {\"18446744073709551616\": 1}}", "{\"d\": {\"-1\": 1}}"}) {
+			try {
+				decoder.decodeTuple(new StringJSONReader(json));
+				Assert.fail("invalid key: " + json);
+			} catch (IOException e) {
+				Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("CDIST0962E"));
+			}
+		}
+	}
+
+	@Test
+	public void lazyTuple() throws Exception {
+
+		LazyJSONTuple lazy = new LazyJSONTuple(Type.Factory.getStreamSchema("tuple<rstring s, int32 t, float64 v>"));
+		byte[] json = "{\"x\": [1, {\"t\": 9}], \"t\": 2, \"s\": \"a\"}".getBytes("UTF-8");
+		lazy.reset(json, 0, json.length);
+		
+		JSONWriter writer = new JSONWriter();
+		lazy.encode(writer);
+		Assert.assertArrayEquals(json, writer.toByteArray());
+		Assert.assertEquals(2, lazy.getObject("t"));
+		Assert.assertEquals(0.0, lazy.getObject("v"));
+		Assert.assertFalse(lazy.isPresent(2));
+		
+		lazy.setObject("s", new RString("b"));
+		lazy.setObject("v", 1.5);
+		writer.reset();
+		lazy.encode(writer);
+		Assert.assertEquals("{\"x\": [1, {\"t\": 9}], \"t\": 2, \"s\": \"b\",\"v\":1.5}", writer.toString());
+		
+		Tuple tuple = lazy.toTuple();
+		Assert.assertEquals("b", tuple.getString("s"));
+		Assert.assertEquals(2, tuple.getInt("t"));
+		Assert.assertEquals(1.5, tuple.getDouble("v"), 0.0);
+
+		// duplicate members, the last one is used by both getObject and toTuple
+		json = "{\"t\": 1, \"s\": \"a\", \"v\": 0.5, \"t\": 2}".getBytes("UTF-8");
+		lazy.reset(json, 0, json.length);
+		tuple = lazy.toTuple();
+		Assert.assertEquals(2, tuple.getInt("t"));
+		Assert.assertEquals("a", tuple.getString("s"));
+		Assert.assertEquals(0.5, tuple.getDouble("v"), 0.0);
+		Assert.assertEquals(2, lazy.getObject("t"));
+		Assert.assertEquals(2, lazy.toTuple().getInt("t"));
+
+		lazy.setObject("t", 3);
+		writer.reset();
+		lazy.encode(writer);
+		Assert.assertEquals("{\"t\": 1, \"s\": \"a\", \"v\": 0.5, \"t\": 3}", writer.toString());
+	}
+
 	@Test
 	public void toJSON() throws Exception {
 		Map<String, Object> map = new HashMap<>();
@@ -83,6 +467,7 @@ public class StandaloneJARTest {
 				.replace(" ", "");
 		
 		Assert.assertEquals(rawExpected, json);
+		Assert.assertEquals(rawExpected, new String(TupleToJSONConverter.convertTupleToUTF8(tuple), "UTF-8"));
 	}
 	
 }
@@ -0,0 +1,221 @@
+package com.ibm.streamsx.json.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.streams.flow.declare.InputPortDeclaration;
+import com.ibm.streams.flow.declare.OperatorGraph;
+import com.ibm.streams.flow.declare.OperatorGraphFactory;
+import com.ibm.streams.flow.declare.OperatorInvocation;
+import com.ibm.streams.flow.declare.OutputPortDeclaration;
+import com.ibm.streams.flow.handlers.StreamHandler;
+import com.ibm.streams.flow.javaprimitives.JavaOperatorTester;
+import com.ibm.streams.flow.javaprimitives.JavaTestableGraph;
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
+import com.ibm.streams.operator.StreamingOutput;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type;
+import com.ibm.streamsx.json.TupleToJSON;
+
+public class TupleToJSONTest {
+
+	/**
+	 * Records the JSON of each output tuple and each punctuation, in submission order.
+	 * Batches can be submitted by the batch timeout task so the handler is synchronized.
+	 */
+	private static class BatchCollector implements StreamHandler<Tuple> {
+		private final List<String> items = new ArrayList<>();
+
+		@Override
+		public synchronized void tuple(Tuple tuple) throws Exception {
+			items.add(tuple.getString("jsonString"));
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void mark(Punctuation mark) throws Exception {
+			items.add(mark.name());
+			notifyAll();
+		}
+
+		synchronized List<String> items() {
+			return new ArrayList<>(items);
+		}
+
+		/**
+		 * Wait for at least count items to be submitted.
+		 */
+		synchronized List<String> await(int count, long timeoutMillis) throws InterruptedException {
+			final long end = System.currentTimeMillis() + timeoutMillis;
+			long wait;
+			while (items.size() < count && (wait = end - System.currentTimeMillis()) > 0)
+				wait(wait);
+			return items();
+		}
+	}
+
+	private OperatorGraph graph;
+	private InputPortDeclaration input;
+	private OutputPortDeclaration output;
+
+	private OperatorInvocation<TupleToJSON> batchOperator(String batchFormat) throws Exception {
+		graph = OperatorGraphFactory.newGraph();
+
+		StreamSchema inSchema = Type.Factory.getStreamSchema("tuple<int32 a>");
+		StreamSchema outSchema = Type.Factory.getStreamSchema("tuple<rstring jsonString>");
+
+		OperatorInvocation<TupleToJSON> tuple2Json = graph.addOperator(TupleToJSON.class);
+		tuple2Json.setStringParameter("batchFormat", batchFormat);
+
+		input = tuple2Json.addInput(inSchema);
+		output = tuple2Json.addOutput(outSchema);
+		return tuple2Json;
+	}
+
+	private JavaTestableGraph start(BatchCollector collector) throws Exception {
+		assertTrue(graph.compileChecks());
+
+		JavaTestableGraph testableGraph = new JavaOperatorTester().executable(graph);
+		testableGraph.registerStreamHandler(output, collector);
+		testableGraph.initialize().get().allPortsReady().get();
+		return testableGraph;
+	}
+
+	/**
+	 * Test a batch is submitted when it reaches batchSize tuples
+	 * and the partial batch is submitted ahead of a punctuation.
+	 */
+	@Test
+	public void testBatchSize() throws Exception {
+		batchOperator("ndjson").setIntParameter("batchSize", 3);
+
+		BatchCollector collector = new BatchCollector();
+		JavaTestableGraph testableGraph = start(collector);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+
+		for (int i = 0; i < 7; i++)
+			testInput.submitAsTuple(i);
+		List<String> items = collector.items();
+		assertEquals(2, items.size());
+		assertEquals("{\"a\":0}\n{\"a\":1}\n{\"a\":2}\n", items.get(0));
+		assertEquals("{\"a\":3}\n{\"a\":4}\n{\"a\":5}\n", items.get(1));
+
+		testInput.punctuate(Punctuation.WINDOW_MARKER);
+		items = collector.items();
+		assertEquals(4, items.size());
+		assertEquals("{\"a\":6}\n", items.get(2));
+		assertEquals(Punctuation.WINDOW_MARKER.name(), items.get(3));
+
+		// no empty batch is submitted for a punctuation without batched tuples
+		testInput.punctuate(Punctuation.WINDOW_MARKER);
+		items = collector.items();
+		assertEquals(5, items.size());
+		assertEquals(Punctuation.WINDOW_MARKER.name(), items.get(4));
+
+		testableGraph.shutdown().get();
+	}
+
+	/**
+	 * Test a batch is submitted once its JSON reaches batchBytes,
+	 * including the array brackets for the array format.
+	 */
+	@Test
+	public void testBatchBytes() throws Exception {
+		// each tuple is 7 bytes plus a separator, 1 byte for the opening bracket
+		batchOperator("array").setIntParameter("batchBytes", 20);
+
+		BatchCollector collector = new BatchCollector();
+		JavaTestableGraph testableGraph = start(collector);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+
+		testInput.submitAsTuple(1);
+		testInput.submitAsTuple(2);
+		assertTrue(collector.items().isEmpty());
+		testInput.submitAsTuple(3);
+		List<String> items = collector.items();
+		assertEquals(1, items.size());
+		assertEquals("[{\"a\":1},{\"a\":2},{\"a\":3}]", items.get(0));
+
+		testInput.submitAsTuple(4);
+		testInput.punctuate(Punctuation.FINAL_MARKER);
+		items = collector.items();
+		assertEquals(3, items.size());
+		assertEquals("[{\"a\":4}]", items.get(1));
+		assertEquals(Punctuation.FINAL_MARKER.name(), items.get(2));
+
+		testableGraph.shutdown().get();
+	}
+
+	/**
+	 * Test a batch is submitted by the timer once it is batchTimeout seconds old.
+	 */
+	@Test
+	public void testBatchTimeout() throws Exception {
+		batchOperator("ndjson").setDoubleParameter("batchTimeout", 0.2);
+
+		BatchCollector collector = new BatchCollector();
+		JavaTestableGraph testableGraph = start(collector);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+
+		testInput.submitAsTuple(1);
+		testInput.submitAsTuple(2);
+		List<String> items = collector.await(1, 10000);
+		assertEquals(1, items.size());
+		assertEquals("{\"a\":1}\n{\"a\":2}\n", items.get(0));
+
+		// a batch submitted by the punctuation cancels its timeout
+		testInput.submitAsTuple(3);
+		testInput.punctuate(Punctuation.WINDOW_MARKER);
+		testInput.submitAsTuple(4);
+		items = collector.await(4, 10000);
+		assertEquals(4, items.size());
+		assertEquals("{\"a\":3}\n", items.get(1));
+		assertEquals(Punctuation.WINDOW_MARKER.name(), items.get(2));
+		assertEquals("{\"a\":4}\n", items.get(3));
+
+		Thread.sleep(400);
+		assertEquals(4, collector.items().size());
+
+		testableGraph.shutdown().get();
+	}
+
+	/**
+	 * Test batches submitted by the timer while tuples are being added
+	 * contain every tuple exactly once and in order.
+	 */
+	@Test
+	public void testBatchTimeoutConcurrent() throws Exception {
+		OperatorInvocation<TupleToJSON> tuple2Json = batchOperator("ndjson");
+		tuple2Json.setIntParameter("batchSize", 50);
+		tuple2Json.setDoubleParameter("batchTimeout", 0.001);
+
+		BatchCollector collector = new BatchCollector();
+		JavaTestableGraph testableGraph = start(collector);
+		StreamingOutput<OutputTuple> testInput = testableGraph.getInputTester(input);
+
+		final int count = 5000;
+		for (int i = 0; i < count; i++)
+			testInput.submitAsTuple(i);
+		testInput.punctuate(Punctuation.FINAL_MARKER);
+
+		List<String> items = collector.items();
+		assertEquals(Punctuation.FINAL_MARKER.name(), items.get(items.size() - 1));
+		int next = 0;
+		for (String batch : items.subList(0, items.size() - 1)) {
+			String[] lines = batch.split("\n");
+			assertTrue(lines.length >= 1 && lines.length <= 50);
+			for (String line : lines)
+				assertEquals("{\"a\":" + next++ + "}", line);
+		}
+		assertEquals(count, next);
+
+		testableGraph.shutdown().get();
+	}
+}